@@ -2,14 +2,49 @@ package ru.practice;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.SchemaToolingSettings;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.tool.schema.UniqueConstraintSchemaUpdateStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.practice.batch.BatchRunner;
+import ru.practice.batch.BatchSummary;
+import ru.practice.cache.CacheWarmer;
+import ru.practice.cache.CachingUserService;
+import ru.practice.cache.PgNotifyInvalidation;
+import ru.practice.cache.UserCache;
+import ru.practice.dao.AdmissionControlledUserDAO;
+import ru.practice.dao.ConcurrencyLimiter;
+import ru.practice.dao.EmailNormalization;
+import ru.practice.dao.RetryPolicy;
+import ru.practice.dao.RetryingUserDAO;
+import ru.practice.dao.ShardedUserDAO;
+import ru.practice.dao.UserDAO;
 import ru.practice.dao.UserDAOImpl;
+import ru.practice.dao.UserPartitions;
+import ru.practice.http.UserHttpServer;
+import ru.practice.load.LoadTest;
 import ru.practice.models.User;
+import ru.practice.models.UserChange;
+import ru.practice.services.SqlTrackingUserService;
 import ru.practice.services.UserService;
 import ru.practice.services.UserServiceImpl;
-
+import ru.practice.util.LogSettings;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class App {
 
@@ -20,42 +55,272 @@ public class App {
 
 
     public static void main(String[] args) {
-        scanner = new Scanner(System.in);
+        if (args.length > 0 && args[0].equals("loadtest")) {
+            LoadTest.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        boolean isBatch = args.length > 0 && args[0].equals("batch");
+        Properties overrides = new Properties();
+        if (isBatch) {
+            // stdout carries only batch results
+            LogSettings.detachConsole();
+            LogSettings.quietApplicationLoggers();
+            overrides.setProperty("hibernate.show_sql", "false");
+        }
+
+        Properties shardProperties = loadShardProperties();
+        if (shardProperties != null) {
+            logger.info("User service started in sharded mode");
+            shardProperties.putAll(overrides);
+
+            try (ShardedUserDAO shardedUserDAO = ShardedUserDAO.fromProperties(shardProperties)) {
+                userService = new SqlTrackingUserService(
+                        new UserServiceImpl(withAdmissionControl(withRetries(shardedUserDAO), args)));
+                run(isBatch, args);
+            }
+            return;
+        }
 
         Configuration configuration = new Configuration()
-                .addAnnotatedClass(User.class);
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+        overrides.forEach((key, value) -> configuration.setProperty((String) key, (String) value));
+        if (Boolean.getBoolean("users.partitioned")) {
+            // A partitioned table rejects unique(email); UserPartitions keeps emails unique with user_emails
+            configuration.setProperty(SchemaToolingSettings.UNIQUE_CONSTRAINT_SCHEMA_UPDATE_STRATEGY,
+                    UniqueConstraintSchemaUpdateStrategy.SKIP.name());
+        }
 
         logger.info("User service started");
 
         try (SessionFactory sessionFactory = configuration.buildSessionFactory()) {
-            userService = new UserServiceImpl(new UserDAOImpl(sessionFactory));
-
-            boolean isExit = false;
-            String line;
-
-            while(!isExit){
-                System.out.println("\n" +
-                        "User service. Choose option: \n" +
-                        "1. create user \n" +
-                        "2. show user \n" +
-                        "3. show all users \n" +
-                        "4. update user \n" +
-                        "5. delete user \n" +
-                        "6. exit");
-
-                line = scanner.nextLine();
-
-                logger.debug("Main menu option: {} (1-save, 2-show user, 3-show all, 4-update user, 5-delete user, 6-exit)", line);
-
-                switch (line) {
-                    case "1" -> createUser();
-                    case "2" -> readUser();
-                    case "3" -> readAllUsers();
-                    case "4" -> updateUser();
-                    case "5" -> deleteUser();
-                    case "6" -> isExit = true;
-                    default -> logger.warn("Unsupported command");
+            ScheduledExecutorService partitionMaintenance = partitionMaintenance(sessionFactory);
+            if (isPostgreSQL(sessionFactory)) {
+                new EmailNormalization(sessionFactory).install();
+            }
+            UserService service = new UserServiceImpl(withAdmissionControl(withRetries(new UserDAOImpl(sessionFactory)), args));
+            UserCache cache = new UserCache(10_000, Duration.ofMinutes(5));
+
+            try (PgNotifyInvalidation invalidation = cacheInvalidation(sessionFactory, cache, args)) {
+                userService = SqlTrackingUserService.forUserDAOImpl(
+                        invalidation == null ? service : new CachingUserService(service, cache, invalidation),
+                        isPostgreSQL(sessionFactory));
+                if (invalidation != null) {
+                    warmUpCache(cache, service, invalidation);
+                }
+                run(isBatch, args);
+            } finally {
+                if (partitionMaintenance != null) {
+                    partitionMaintenance.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * With {@code -Dusers.partitioned=true} on PostgreSQL the users table is switched to monthly partitions
+     * and partitions of the next three months are kept created.
+     */
+    private static ScheduledExecutorService partitionMaintenance(SessionFactory sessionFactory) {
+        if (!Boolean.getBoolean("users.partitioned")) {
+            return null;
+        }
+        if (!isPostgreSQL(sessionFactory)) {
+            logger.warn("Partitioned users table needs PostgreSQL, ignoring users.partitioned");
+            return null;
+        }
+
+        UserPartitions partitions = new UserPartitions(sessionFactory, 3);
+        partitions.install();
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "user-partitions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        partitions.scheduleMaintenance(executor, Duration.ofHours(12));
+        return executor;
+    }
+
+    /**
+     * Reloads the users that were hot before the last shutdown in the background, and saves the current
+     * hot set on shutdown. The file is {@code -Dcache.warmFile}, {@code user-cache.warm} by default.
+     */
+    private static void warmUpCache(UserCache cache, UserService service, PgNotifyInvalidation invalidation) {
+        CacheWarmer warmer = new CacheWarmer(cache, service, Path.of(System.getProperty("cache.warmFile", "user-cache.warm")));
+        Executor background = task -> {
+            Thread thread = new Thread(task, "user-cache-warmup");
+            thread.setDaemon(true);
+            thread.start();
+        };
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                if (!invalidation.awaitListening(Duration.ofSeconds(30))) {
+                    logger.warn("Cache invalidation listener is not connected, warming up anyway");
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, background).thenCompose(ignored -> warmer.warmUp(background)).exceptionally(e -> {
+            logger.warn("User cache warm-up failed: {}", e.getMessage());
+            return 0;
+        });
+
+        // Shutdown hooks run while the main thread may still be closing the server, so dump from a hook
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> warmer.dump(10_000), "user-cache-dump"));
+    }
+
+    private static boolean isPostgreSQL(SessionFactory sessionFactory) {
+        Dialect dialect = sessionFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        return dialect instanceof PostgreSQLDialect;
+    }
+
+    /**
+     * Several HTTP API instances may share the database, so their user caches are only used together
+     * with invalidation over PostgreSQL notifications.
+     */
+    private static PgNotifyInvalidation cacheInvalidation(SessionFactory sessionFactory, UserCache cache, String[] args) {
+        if (args.length == 0 || !args[0].equals("http")) {
+            return null;
+        }
+        if (!isPostgreSQL(sessionFactory)) {
+            return null;
+        }
+
+        PgNotifyInvalidation invalidation = new PgNotifyInvalidation(sessionFactory, cache);
+        invalidation.start();
+        return invalidation;
+    }
+
+    /**
+     * Deadlocks and serialization failures between concurrent writers are retried with jittered backoff.
+     * Retries run inside the admission control slot of the call, so they cannot exceed its limits.
+     */
+    private static UserDAO withRetries(UserDAO userDAO) {
+        RetryPolicy retryPolicy = RetryPolicy.defaults("database");
+        retryPolicy.registerMBean();
+        return new RetryingUserDAO(userDAO, retryPolicy);
+    }
+
+    /**
+     * The HTTP API takes traffic it does not control, so there calls to the database go through adaptive
+     * read and write limits and are rejected with 503 instead of piling up on the connection pool.
+     */
+    private static UserDAO withAdmissionControl(UserDAO userDAO, String[] args) {
+        if (args.length == 0 || !args[0].equals("http")) {
+            return userDAO;
+        }
+
+        ConcurrencyLimiter readLimiter = ConcurrencyLimiter.adaptive("reads", 10, 2, 16,
+                200, Duration.ofMillis(500), Duration.ofMillis(100));
+        ConcurrencyLimiter writeLimiter = ConcurrencyLimiter.adaptive("writes", 4, 1, 8,
+                100, Duration.ofMillis(500), Duration.ofMillis(200));
+        readLimiter.registerMBean();
+        writeLimiter.registerMBean();
+        return new AdmissionControlledUserDAO(userDAO, readLimiter, writeLimiter);
+    }
+
+    private static void run(boolean isBatch, String[] args) {
+        if (isBatch) {
+            runBatch(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && args[0].equals("http")) {
+            runHttp(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+        } else {
+            scanner = new Scanner(System.in);
+            runMenu();
+        }
+    }
+
+    /**
+     * Usage: {@code batch [script file, stdin if omitted or "-"] [batchSize=N]}.
+     */
+    private static void runBatch(String[] args) {
+        String script = "-";
+        int batchSize = 500;
+        for (String arg : args) {
+            if (arg.startsWith("batchSize=")) {
+                batchSize = Integer.parseInt(arg.substring("batchSize=".length()));
+            } else {
+                script = arg;
+            }
+        }
+
+        try (BufferedReader in = script.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Path.of(script), StandardCharsets.UTF_8)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+
+            BatchSummary summary = new BatchRunner(userService, out, batchSize).run(in);
+            System.err.println("Batch summary: " + summary);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not execute batch script " + script, e);
+        }
+    }
+
+    /**
+     * Serves the HTTP API until the process is stopped.
+     */
+    private static void runHttp(int port) {
+        // Without TCP_NODELAY the header and body writes of small responses meet delayed ACKs on kept-alive
+        // connections and every request waits ~40 ms. The JDK reads it once, before the first server starts.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+
+        try (UserHttpServer server = new UserHttpServer(userService, new InetSocketAddress(port))) {
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(stopped::countDown));
+            stopped.await();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start HTTP API on port " + port, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Properties loadShardProperties() {
+        try (InputStream in = App.class.getClassLoader().getResourceAsStream("shards.properties")) {
+            if (in == null) {
+                return null;
+            }
+
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read shards.properties", e);
+        }
+    }
+
+    private static void runMenu() {
+        boolean isExit = false;
+        String line;
+
+        while(!isExit){
+            System.out.println("\n" +
+                    "User service. Choose option: \n" +
+                    "1. create user \n" +
+                    "2. show user \n" +
+                    "3. show all users \n" +
+                    "4. update user \n" +
+                    "5. delete user \n" +
+                    "6. exit");
+
+            line = scanner.nextLine();
+
+            logger.debug("Main menu option: {} (1-save, 2-show user, 3-show all, 4-update user, 5-delete user, 6-exit)", line);
+
+            switch (line) {
+                case "1" -> createUser();
+                case "2" -> readUser();
+                case "3" -> readAllUsers();
+                case "4" -> updateUser();
+                case "5" -> deleteUser();
+                case "6" -> isExit = true;
+                default -> logger.warn("Unsupported command");
             }
         }
     }
@@ -0,0 +1,279 @@
+package ru.practice.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.models.User;
+import ru.practice.services.Emails;
+import ru.practice.services.UserService;
+import ru.practice.services.UserValidator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Executes a command script against {@link UserService}. One command per line:
+ * <pre>
+ * create &lt;email&gt; &lt;age&gt; &lt;name...&gt;
+ * read &lt;id&gt;
+ * update &lt;id&gt; &lt;email&gt; &lt;age&gt; &lt;name...&gt;
+ * delete &lt;id&gt;
+ * list
+ * </pre>
+ * Empty lines and lines starting with {@code #} are skipped. Consecutive creates are saved together.
+ * <p>
+ * Every result is one tab-separated line: {@code lineNumber status command [details]}, where status is
+ * {@code OK}, {@code NOT_FOUND} or {@code ERROR}. Users are written as {@code id name email age createdAt}.
+ */
+public class BatchRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchRunner.class);
+
+    private final UserService userService;
+    private final Writer out;
+    private final int batchSize;
+
+    private final UserValidator validator = UserValidator.standard();
+    private final List<PendingCreate> pendingCreates = new ArrayList<>();
+    private final BatchSummary summary = new BatchSummary();
+
+    public BatchRunner(UserService userService, Writer out, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
+
+        this.userService = userService;
+        this.out = out;
+        this.batchSize = batchSize;
+    }
+
+    public BatchSummary run(BufferedReader in) throws IOException {
+        long startNanos = System.nanoTime();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            execute(lineNumber, line);
+        }
+        flushCreates();
+        out.flush();
+
+        summary.setElapsedNanos(System.nanoTime() - startNanos);
+        logger.info("Batch finished: {}", summary);
+        return summary;
+    }
+
+    private void execute(int lineNumber, String line) throws IOException {
+        String[] parts = line.split("\\s+", 5);
+        String command = parts[0].toLowerCase();
+
+        if (!command.equals("create")) {
+            flushCreates();
+        }
+
+        try {
+            switch (command) {
+                case "create" -> {
+                    requireArguments(parts, 4, "create <email> <age> <name>");
+                    pendingCreates.add(new PendingCreate(lineNumber,
+                            joinName(parts, 3), parts[1], Integer.parseInt(parts[2])));
+                    if (pendingCreates.size() >= batchSize) {
+                        flushCreates();
+                    }
+                }
+                case "read" -> {
+                    requireArguments(parts, 2, "read <id>");
+                    Optional<User> user = userService.read(Integer.parseInt(parts[1]));
+                    if (user.isPresent()) {
+                        writeUser(lineNumber, command, user.get());
+                    } else {
+                        writeResult(lineNumber, BatchSummary.Status.NOT_FOUND, command, parts[1]);
+                    }
+                }
+                case "update" -> {
+                    requireArguments(parts, 5, "update <id> <email> <age> <name>");
+                    User user = new User(Integer.parseInt(parts[1]), parts[4], parts[2], Integer.parseInt(parts[3]));
+                    writeUser(lineNumber, command, userService.update(user));
+                }
+                case "delete" -> {
+                    requireArguments(parts, 2, "delete <id>");
+                    userService.delete(Integer.parseInt(parts[1]));
+                    writeResult(lineNumber, BatchSummary.Status.OK, command, parts[1]);
+                }
+                case "list" -> {
+                    List<User> users = userService.readAll();
+                    for (User user : users) {
+                        writeUser(lineNumber, command, user);
+                    }
+                    if (users.isEmpty()) {
+                        writeResult(lineNumber, BatchSummary.Status.OK, command, "");
+                    }
+                }
+                default -> writeResult(lineNumber, BatchSummary.Status.ERROR, command, "Unsupported command");
+            }
+        } catch (Exception e) {
+            writeResult(lineNumber, BatchSummary.Status.ERROR, command, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Saves the collected creates in one call. Creates that break {@link UserValidator} rules or repeat the
+     * email of an earlier create in the group are reported without reaching the service, so one bad line
+     * does not reject the batch. If the batch is rejected
+     * anyway (e.g. a taken email), every user is saved on its own so that each line gets its own result.
+     */
+    private void flushCreates() throws IOException {
+        if (pendingCreates.isEmpty()) {
+            return;
+        }
+
+        List<User> users = new ArrayList<>(pendingCreates.size());
+        for (PendingCreate create : pendingCreates) {
+            User user = create.toUser();
+            user.setEmail(Emails.normalize(user.getEmail()));
+            users.add(user);
+        }
+        int[] violations = new int[users.size()];
+        int[] repeatedLines = new int[users.size()];
+        List<User> valid = users;
+        if (validator.validateAll(users, violations) != 0) {
+            markRepeatedEmails(users, violations, repeatedLines);
+            valid = new ArrayList<>(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                if (violations[i] == 0) {
+                    valid.add(users.get(i));
+                }
+            }
+        }
+
+        try {
+            List<User> saved = List.of();
+            if (!valid.isEmpty()) {
+                saved = userService.saveAll(valid);
+                summary.addBatch();
+            }
+            int next = 0;
+            for (int i = 0; i < users.size(); i++) {
+                if (violations[i] == 0) {
+                    writeUser(pendingCreates.get(i).lineNumber, "create", saved.get(next++));
+                } else {
+                    writeInvalid(pendingCreates.get(i).lineNumber, violations[i], repeatedLines[i]);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Batch of {} creates was rejected, saving one by one: {}", valid.size(), e.getMessage());
+
+            for (int i = 0; i < pendingCreates.size(); i++) {
+                PendingCreate create = pendingCreates.get(i);
+                if (violations[i] != 0) {
+                    writeInvalid(create.lineNumber, violations[i], repeatedLines[i]);
+                    continue;
+                }
+                try {
+                    writeUser(create.lineNumber, "create", userService.save(create.toUser()));
+                } catch (Exception single) {
+                    writeResult(create.lineNumber, BatchSummary.Status.ERROR, "create", String.valueOf(single.getMessage()));
+                }
+            }
+        } finally {
+            pendingCreates.clear();
+        }
+    }
+
+    /**
+     * {@link UserValidator#validateAll} marks an email repeated even if its first line is rejected for
+     * another reason. Here only lines that pass every other rule count: the first of them keeps the email,
+     * the later ones are reported with the line they repeat, and the rest of the group is still saved in
+     * one call instead of falling back to single saves.
+     */
+    private void markRepeatedEmails(List<User> users, int[] violations, int[] repeatedLines) {
+        Map<String, Integer> firstLines = new HashMap<>(users.size() * 2);
+        for (int i = 0; i < users.size(); i++) {
+            violations[i] &= ~UserValidator.EMAIL_DUPLICATE;
+            if (violations[i] != 0) {
+                continue;
+            }
+            Integer first = firstLines.putIfAbsent(users.get(i).getEmail(), pendingCreates.get(i).lineNumber);
+            if (first != null) {
+                violations[i] = UserValidator.EMAIL_DUPLICATE;
+                repeatedLines[i] = first;
+            }
+        }
+    }
+
+    private void writeInvalid(int lineNumber, int violations, int repeatedLine) throws IOException {
+        String details = UserValidator.describe(violations);
+        if (repeatedLine != 0) {
+            details += " It repeats line " + repeatedLine + ".";
+        }
+        writeResult(lineNumber, BatchSummary.Status.ERROR, "create", details);
+    }
+
+    private void writeUser(int lineNumber, String command, User user) throws IOException {
+        writeResult(lineNumber, BatchSummary.Status.OK, command,
+                user.getId() + "\t" + clean(user.getName()) + "\t" + clean(user.getEmail()) + "\t"
+                        + user.getAge() + "\t" + user.getCreatedAt());
+    }
+
+    private void writeResult(int lineNumber, BatchSummary.Status status, String command, String details)
+            throws IOException {
+        summary.add(command, status);
+
+        out.write(Integer.toString(lineNumber));
+        out.write('\t');
+        out.write(status.name());
+        out.write('\t');
+        out.write(command);
+        if (!details.isEmpty()) {
+            out.write('\t');
+            out.write(status == BatchSummary.Status.ERROR ? clean(details) : details);
+        }
+        out.write('\n');
+    }
+
+    private static void requireArguments(String[] parts, int count, String usage) {
+        if (parts.length < count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    private static String joinName(String[] parts, int from) {
+        return from == parts.length - 1 ? parts[from] : String.join(" ", List.of(parts).subList(from, parts.length));
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ').trim();
+    }
+
+    private static class PendingCreate {
+
+        private final int lineNumber;
+        private final String name;
+        private final String email;
+        private final int age;
+
+        PendingCreate(int lineNumber, String name, String email, int age) {
+            this.lineNumber = lineNumber;
+            this.name = name;
+            this.email = email;
+            this.age = age;
+        }
+
+        User toUser() {
+            return new User(name, email, age);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.practice.batch;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts of executed batch commands by command and status.
+ */
+public class BatchSummary {
+
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        ERROR
+    }
+
+    private final Map<String, long[]> counts = new TreeMap<>();
+    private long createBatches;
+    private long elapsedNanos;
+
+    void add(String command, Status status) {
+        counts.computeIfAbsent(command, key -> new long[Status.values().length])[status.ordinal()]++;
+    }
+
+    void addBatch() {
+        createBatches++;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getCount(String command, Status status) {
+        long[] commandCounts = counts.get(command);
+        return commandCounts == null ? 0 : commandCounts[status.ordinal()];
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (long[] commandCounts : counts.values()) {
+            for (long count : commandCounts) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    public long getCreateBatches() {
+        return createBatches;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("results= ").append(getTotal())
+                .append(", create batches= ").append(createBatches)
+                .append(", elapsed= ").append(String.format("%.3f", elapsedNanos / 1e9)).append("s");
+
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            builder.append(", ").append(entry.getKey()).append("= {");
+            Status[] statuses = Status.values();
+            for (int i = 0; i < statuses.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(statuses[i]).append('=').append(entry.getValue()[i]);
+            }
+            builder.append('}');
+        }
+        return builder.toString();
+    }
+}
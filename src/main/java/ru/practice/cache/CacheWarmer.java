@@ -0,0 +1,189 @@
+package ru.practice.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carries the hot set of a {@link UserCache} over a restart. On shutdown {@link #dump} writes the ids of the
+ * most recently used users to a file; on startup {@link #warmUp} maps the file, and loads the users in
+ * batches through {@link UserService#readByIds} in the background while the service already takes requests.
+ * <p>
+ * Only ids are kept: rows may change while the service is down, so they are read fresh. The file is
+ * {@code "UCW1"}, the id count and the ids as big-endian ints.
+ */
+public class CacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final int MAGIC = 0x55435731;
+    private static final int HEADER_BYTES = 8;
+    private static final int BATCH_SIZE = 500;
+    private static final int BATCH_ATTEMPTS = 3;
+
+    private final UserCache cache;
+    private final UserService userService;
+    private final Path file;
+
+    private volatile long warmUpNanos = -1;
+    private volatile double warmUpHitRate = Double.NaN;
+    private volatile int warmedUsers;
+
+    public CacheWarmer(UserCache cache, UserService userService, Path file) {
+        this.cache = cache;
+        this.userService = userService;
+        this.file = file;
+    }
+
+    /**
+     * Writes the ids of up to {@code limit} hottest users, replacing the file atomically.
+     */
+    public void dump(int limit) {
+        int[] ids = cache.hottestIds(limit);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + ids.length * Integer.BYTES);
+        buffer.putInt(MAGIC).putInt(ids.length);
+        buffer.asIntBuffer().put(ids);
+        buffer.rewind();
+
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved {} hot user ids to {}", ids.length, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save hot user ids to " + file, e);
+        }
+    }
+
+    /**
+     * Ids saved by the last {@link #dump}, or an empty array when there is no file.
+     */
+    public int[] readIds() {
+        if (!Files.exists(file)) {
+            return new int[0];
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.remaining() < HEADER_BYTES || mapped.getInt() != MAGIC) {
+                logger.warn("Ignoring {}: not a user cache file", file);
+                return new int[0];
+            }
+
+            int count = mapped.getInt();
+            IntBuffer ids = mapped.asIntBuffer();
+            if (count < 0 || count > ids.remaining()) {
+                logger.warn("Ignoring {}: truncated", file);
+                return new int[0];
+            }
+            int[] result = new int[count];
+            ids.get(result);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read hot user ids from " + file, e);
+        }
+    }
+
+    /**
+     * Loads the saved users into the cache on the executor, hottest first. Requests served meanwhile
+     * count towards the warm-up hit rate.
+     */
+    public CompletableFuture<Integer> warmUp(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            long startNanos = System.nanoTime();
+            long startHits = cache.getHitCount();
+            long startMisses = cache.getMissCount();
+
+            int[] ids = readIds();
+            int loaded = 0;
+            for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+                List<Integer> batch = new ArrayList<>(BATCH_SIZE);
+                for (int i = from; i < Math.min(ids.length, from + BATCH_SIZE); i++) {
+                    batch.add(ids[i]);
+                }
+
+                loaded += load(batch);
+            }
+
+            long hits = cache.getHitCount() - startHits;
+            long lookups = hits + cache.getMissCount() - startMisses;
+            warmedUsers = loaded;
+            warmUpHitRate = lookups == 0 ? Double.NaN : (double) hits / lookups;
+            warmUpNanos = System.nanoTime() - startNanos;
+
+            logger.info("User cache warmed up: {} of {} users in {} ms, hit rate during warm-up {}",
+                    loaded, ids.length, TimeUnit.NANOSECONDS.toMillis(warmUpNanos),
+                    lookups == 0 ? "n/a" : String.format("%.1f%% of %d lookups", warmUpHitRate * 100, lookups));
+            return loaded;
+        }, executor);
+    }
+
+    /**
+     * Reads and caches a batch. An invalidation between the read and {@link UserCache#put} makes the cache
+     * reject the rest of the batch, since those rows may be stale; they are read again, a few times at most.
+     *
+     * @return the number of users actually cached
+     */
+    private int load(List<Integer> batch) {
+        int loaded = 0;
+        List<Integer> pending = batch;
+        for (int attempt = 0; attempt < BATCH_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            long generation = cache.generation();
+            List<Integer> rejected = new ArrayList<>();
+            for (User user : userService.readByIds(pending)) {
+                if (cache.put(user, generation)) {
+                    loaded++;
+                } else {
+                    rejected.add(user.getId());
+                }
+            }
+            pending = rejected;
+        }
+        if (!pending.isEmpty()) {
+            logger.debug("{} users kept being invalidated during warm-up and were not cached", pending.size());
+        }
+        return loaded;
+    }
+
+    /**
+     * Duration of the last warm-up in milliseconds, or -1 while it has not finished.
+     */
+    public long getWarmUpMillis() {
+        return warmUpNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(warmUpNanos);
+    }
+
+    /**
+     * Share of cache lookups that hit during the last warm-up, NaN when there were none.
+     */
+    public double getWarmUpHitRate() {
+        return warmUpHitRate;
+    }
+
+    public int getWarmedUsers() {
+        return warmedUsers;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practice.cache;
+
+import ru.practice.models.User;
+import ru.practice.services.Emails;
+import ru.practice.services.UserService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link UserService} decorator that serves {@link #read} and {@link #readByEmail} from a {@link UserCache}
+ * and loads misses through the wrapped service. After an update or delete the user is evicted locally
+ * and, when an invalidation is given, on the other nodes.
+ * <p>
+ * Saves are not published: only found users are cached, so no node can hold a user that did not exist.
+ */
+public class CachingUserService implements UserService {
+
+    private final UserService userService;
+    private final UserCache cache;
+    private final PgNotifyInvalidation invalidation;
+
+    /**
+     * @param invalidation cross-node invalidation, or null for a single node
+     */
+    public CachingUserService(UserService userService, UserCache cache, PgNotifyInvalidation invalidation) {
+        this.userService = userService;
+        this.cache = cache;
+        this.invalidation = invalidation;
+    }
+
+    public User save(User user) {
+        return userService.save(user);
+    }
+
+    public List<User> saveAll(List<User> users) {
+        return userService.saveAll(users);
+    }
+
+    public Optional<User> read(int id) {
+        Optional<User> cached = cache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        long generation = cache.generation();
+        Optional<User> user = userService.read(id);
+        user.ifPresent(found -> cache.put(found, generation));
+        return user;
+    }
+
+    public Optional<User> readByEmail(String email) {
+        Optional<User> cached = cache.getByEmail(Emails.normalize(email));
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        long generation = cache.generation();
+        Optional<User> user = userService.readByEmail(email);
+        user.ifPresent(found -> cache.put(found, generation));
+        return user;
+    }
+
+    public List<User> readAll() {
+        return userService.readAll();
+    }
+
+    public List<User> readPage(int afterId, int limit) {
+        return userService.readPage(afterId, limit);
+    }
+
+    public List<User> readByIds(Collection<Integer> ids) {
+        return userService.readByIds(ids);
+    }
+
+    public User update(User user) {
+        User updated = userService.update(user);
+        evict(updated.getId());
+        return updated;
+    }
+
+    public void delete(int id) {
+        userService.delete(id);
+        evict(id);
+    }
+
+    private void evict(int id) {
+        cache.invalidate(id);
+        if (invalidation != null) {
+            invalidation.publish(id);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package ru.practice.cache;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@link UserCache}s of several nodes consistent over PostgreSQL {@code LISTEN}/{@code NOTIFY}.
+ * A node that changed a user calls {@link #publish(int)} after the commit; every other node's listener
+ * thread receives the user id and evicts it.
+ * <p>
+ * The listener holds one pooled connection for its lifetime. Notifications sent while it is disconnected
+ * are lost, so after every (re)connect the whole cache is dropped.
+ */
+public class PgNotifyInvalidation implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PgNotifyInvalidation.class);
+
+    public static final String CHANNEL = "user_cache";
+
+    private static final int POLL_MILLIS = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final SessionFactory sessionFactory;
+    private final ConnectionProvider connectionProvider;
+    private final UserCache cache;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Thread listener;
+    private final CountDownLatch listening = new CountDownLatch(1);
+    private volatile boolean closed;
+
+    public PgNotifyInvalidation(SessionFactory sessionFactory, UserCache cache) {
+        this.sessionFactory = sessionFactory;
+        this.connectionProvider = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().requireService(ConnectionProvider.class);
+        this.cache = cache;
+        this.listener = new Thread(this::listen, "user-cache-listener");
+        this.listener.setDaemon(true);
+    }
+
+    public void start() {
+        listener.start();
+    }
+
+    /**
+     * Waits until the listener is connected. Users cached before that may miss invalidations and are dropped
+     * when it connects, so a cache should be filled in bulk only afterwards.
+     *
+     * @return false if the listener did not connect in time
+     */
+    public boolean awaitListening(Duration timeout) throws InterruptedException {
+        return listening.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tells the other nodes that the user changed. Call after the change is committed, otherwise a node may
+     * reload the old row before the commit.
+     */
+    public void publish(int userId) {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            session.doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement("select pg_notify(?, ?)")) {
+                    statement.setString(1, CHANNEL);
+                    statement.setString(2, nodeId + ":" + userId);
+                    statement.execute();
+                }
+            });
+
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            // Other nodes keep the old value until its time to live runs out
+            logger.warn("Could not publish cache invalidation of user {}: {}", userId, e.getMessage());
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        listener.interrupt();
+        try {
+            listener.join(POLL_MILLIS * 4L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void listen() {
+        while (!closed) {
+            Connection connection = null;
+            try {
+                connection = connectionProvider.getConnection();
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                cache.invalidateAll();
+                listening.countDown();
+                logger.info("Listening for user cache invalidations");
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (!closed) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            apply(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (closed) {
+                    break;
+                }
+                logger.warn("User cache listener lost its connection: {}", e.getMessage());
+                cache.invalidateAll();
+                sleep();
+            } catch (RuntimeException e) {
+                // The pool or the driver failed in an unexpected way; without this the thread would die and
+                // the node would keep serving stale users with nobody listening
+                if (closed) {
+                    break;
+                }
+                logger.error("User cache listener failed, reconnecting", e);
+                cache.invalidateAll();
+                sleep();
+            } finally {
+                if (connection != null) {
+                    release(connection);
+                }
+            }
+        }
+    }
+
+    private void apply(String payload) {
+        int separator = payload.lastIndexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        try {
+            cache.invalidate(Integer.parseInt(payload.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            logger.warn("Unexpected user cache invalidation: {}", payload);
+        }
+    }
+
+    private void release(Connection connection) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UNLISTEN " + CHANNEL);
+            // Pooled connections are handed out with auto-commit off
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            logger.debug("Could not reset user cache listener connection: {}", e.getMessage());
+        }
+        try {
+            connectionProvider.closeConnection(connection);
+        } catch (SQLException e) {
+            logger.debug("Could not release user cache listener connection: {}", e.getMessage());
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+}
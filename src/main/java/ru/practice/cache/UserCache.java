@@ -0,0 +1,193 @@
+package ru.practice.cache;
+
+import ru.practice.models.User;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of users by id, with an index by email. Entries older than the time to live are dropped
+ * on access, which bounds staleness even if an invalidation message is lost.
+ * <p>
+ * A value read from the database may already be stale when it is put: another node could have changed the
+ * user and its invalidation could have arrived while the read was running. Readers therefore take
+ * {@link #generation()} before the read and pass it to {@link #put}, which ignores the value if any
+ * invalidation happened in between.
+ */
+public class UserCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<Integer, Entry> byId;
+    private final Map<String, Integer> idsByEmail = new HashMap<>();
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size should be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > UserCache.this.maxSize) {
+                    idsByEmail.remove(eldest.getValue().user.getEmail(), eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Optional<User> get(int id) {
+        synchronized (this) {
+            Entry entry = byId.get(id);
+            if (entry != null && !isExpired(entry)) {
+                hits.incrementAndGet();
+                return Optional.of(copy(entry.user));
+            }
+            if (entry != null) {
+                remove(id);
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public Optional<User> getByEmail(String email) {
+        synchronized (this) {
+            Integer id = idsByEmail.get(email);
+            if (id != null) {
+                return get(id);
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Value to pass to {@link #put} for a user read after this call.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the user unless something was invalidated since {@code generation} was taken.
+     *
+     * @return false if the user was not cached because of an invalidation
+     */
+    public synchronized boolean put(User user, long generation) {
+        if (generation != this.generation) {
+            return false;
+        }
+
+        Entry previous = byId.put(user.getId(), new Entry(copy(user), System.nanoTime()));
+        if (previous != null && !previous.user.getEmail().equals(user.getEmail())) {
+            idsByEmail.remove(previous.user.getEmail(), user.getId());
+        }
+        idsByEmail.put(user.getEmail(), user.getId());
+        return true;
+    }
+
+    public synchronized void invalidate(int id) {
+        generation++;
+        invalidations.incrementAndGet();
+        remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.incrementAndGet();
+        byId.clear();
+        idsByEmail.clear();
+    }
+
+    /**
+     * Ids of up to {@code limit} most recently used users, most recent first.
+     */
+    public synchronized int[] hottestIds(int limit) {
+        int count = Math.min(limit, byId.size());
+        int[] ids = new int[count];
+        int skip = byId.size() - count;
+        int index = count;
+        for (Integer id : byId.keySet()) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                ids[--index] = id;
+            }
+        }
+        return ids;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return "size= " + size() +
+                ", hits= " + getHitCount() +
+                ", misses= " + getMissCount() +
+                ", invalidations= " + getInvalidationCount();
+    }
+
+    private void remove(int id) {
+        Entry entry = byId.remove(id);
+        if (entry != null) {
+            idsByEmail.remove(entry.user.getEmail(), id);
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.cachedAtNanos > ttlNanos;
+    }
+
+    /**
+     * Users are mutable, so callers neither change cached values nor see each other's changes.
+     */
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setName(user.getName());
+        copy.setEmail(user.getEmail());
+        copy.setAge(user.getAge());
+        copy.setCreatedAt(user.getCreatedAt());
+        return copy;
+    }
+
+    private static class Entry {
+
+        final User user;
+        final long cachedAtNanos;
+
+        Entry(User user, long cachedAtNanos) {
+            this.user = user;
+            this.cachedAtNanos = cachedAtNanos;
+        }
+    }
+}
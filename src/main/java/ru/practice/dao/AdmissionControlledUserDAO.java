@@ -0,0 +1,96 @@
+package ru.practice.dao;
+
+import ru.practice.models.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * {@link UserDAO} decorator that admits calls to the database through separate limiters for reads and
+ * writes, so a burst of one kind cannot take all connections from the other and excess calls fail fast
+ * with {@link OverloadException} instead of queueing on the connection pool.
+ */
+public class AdmissionControlledUserDAO implements UserDAO {
+
+    private final UserDAO userDAO;
+    private final ConcurrencyLimiter readLimiter;
+    private final ConcurrencyLimiter writeLimiter;
+
+    public AdmissionControlledUserDAO(UserDAO userDAO, ConcurrencyLimiter readLimiter, ConcurrencyLimiter writeLimiter) {
+        this.userDAO = userDAO;
+        this.readLimiter = readLimiter;
+        this.writeLimiter = writeLimiter;
+    }
+
+    public ConcurrencyLimiter getReadLimiter() {
+        return readLimiter;
+    }
+
+    public ConcurrencyLimiter getWriteLimiter() {
+        return writeLimiter;
+    }
+
+    public User save(User user) {
+        return admit(writeLimiter, () -> userDAO.save(user));
+    }
+
+    public List<User> saveAll(List<User> users) {
+        return admit(writeLimiter, () -> userDAO.saveAll(users));
+    }
+
+    public Optional<User> readById(int id) {
+        return admit(readLimiter, () -> userDAO.readById(id));
+    }
+
+    public Optional<User> readByEmail(String email) {
+        return admit(readLimiter, () -> userDAO.readByEmail(email));
+    }
+
+    public List<User> readByEmails(Collection<String> emails) {
+        return admit(readLimiter, () -> userDAO.readByEmails(emails));
+    }
+
+    public List<User> readAll() {
+        return admit(readLimiter, userDAO::readAll);
+    }
+
+    public List<User> readPage(int afterId, int limit) {
+        return admit(readLimiter, () -> userDAO.readPage(afterId, limit));
+    }
+
+    public List<User> readByIds(Collection<Integer> ids) {
+        return admit(readLimiter, () -> userDAO.readByIds(ids));
+    }
+
+    public User update(User user) {
+        return admit(writeLimiter, () -> userDAO.update(user));
+    }
+
+    public void delete(int id) {
+        admit(writeLimiter, () -> {
+            userDAO.delete(id);
+            return null;
+        });
+    }
+
+    private static <T> T admit(ConcurrencyLimiter limiter, Supplier<T> call) {
+        limiter.acquire();
+
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = call.get();
+            succeeded = true;
+            return result;
+        } catch (IllegalArgumentException | NoSuchElementException | NullPointerException e) {
+            // Rejected input says nothing about database health.
+            succeeded = true;
+            throw e;
+        } finally {
+            limiter.release(System.nanoTime() - startNanos, succeeded);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package ru.practice.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many calls run at once. Calls over the limit wait in a bounded FIFO queue for a bounded time
+ * and are rejected with {@link OverloadException} when the queue is full or the wait runs out. The wait
+ * never outlasts the thread's {@link Deadline}; a call whose deadline runs out in the queue gets
+ * {@link DeadlineExceededException}.
+ * <p>
+ * An adaptive limiter adjusts the limit from observed latency (AIMD): every call faster than the latency
+ * threshold that ran while the limiter was saturated grows the limit by {@code 1 / limit}, every slower or
+ * failed call shrinks it by 10%. Fast calls well under the limit say nothing about whether more would be
+ * fine, so they leave it alone.
+ */
+public class ConcurrencyLimiter implements ConcurrencyLimiterMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final long latencyThresholdNanos;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    private ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                               int maxQueue, Duration maxWait, Duration latencyThreshold) {
+        if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits should satisfy 0 < min <= initial <= max");
+        }
+        if (maxQueue < 0) {
+            throw new IllegalArgumentException("Queue size cant be negative");
+        }
+
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.latencyThresholdNanos = latencyThreshold == null ? 0 : latencyThreshold.toNanos();
+    }
+
+    public static ConcurrencyLimiter fixed(String name, int limit, int maxQueue, Duration maxWait) {
+        return new ConcurrencyLimiter(name, limit, limit, limit, maxQueue, maxWait, null);
+    }
+
+    public static ConcurrencyLimiter adaptive(String name, int initialLimit, int minLimit, int maxLimit,
+                                              int maxQueue, Duration maxWait, Duration latencyThreshold) {
+        if (latencyThreshold == null || latencyThreshold.isNegative() || latencyThreshold.isZero()) {
+            throw new IllegalArgumentException("Latency threshold should be positive");
+        }
+        return new ConcurrencyLimiter(name, initialLimit, minLimit, maxLimit, maxQueue, maxWait, latencyThreshold);
+    }
+
+    /**
+     * Waits for a free slot. Every successful call must be paired with {@link #release(long, boolean)}.
+     */
+    public void acquire() {
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < (int) limit) {
+                inFlight++;
+                accepted.incrementAndGet();
+                return;
+            }
+            if (queued >= maxQueue) {
+                rejectedQueueFull.incrementAndGet();
+                throw new OverloadException(name + ": queue is full (" + queued + " waiting)");
+            }
+
+            long remaining = maxWaitNanos;
+            Optional<Deadline> deadline = Deadline.current();
+            boolean byDeadline = deadline.isPresent() && deadline.get().remainingNanos() < remaining;
+            if (byDeadline) {
+                remaining = deadline.get().remainingNanos();
+            }
+
+            queued++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejectedTimeout.incrementAndGet();
+                        if (byDeadline) {
+                            throw new DeadlineExceededException(name + ": deadline expired while waiting");
+                        }
+                        throw new OverloadException(name + ": no capacity within "
+                                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OverloadException(name + ": interrupted while waiting");
+            } finally {
+                queued--;
+            }
+
+            inFlight++;
+            accepted.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(long latencyNanos, boolean succeeded) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit || queued > 0;
+            inFlight--;
+
+            if (latencyThresholdNanos > 0) {
+                double previous = limit;
+                if (succeeded && latencyNanos <= latencyThresholdNanos) {
+                    if (saturated) {
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                } else {
+                    limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                }
+                if ((int) previous != (int) limit) {
+                    logger.debug("{} limit changed from {} to {}", name, (int) previous, (int) limit);
+                }
+                if ((int) limit > (int) previous) {
+                    released.signalAll();
+                    return;
+                }
+            }
+
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Exposes the counters over JMX as {@code ru.practice:type=ConcurrencyLimiter,name=<name>}.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName("ru.practice:type=ConcurrencyLimiter,name=" + name));
+        } catch (JMException e) {
+            logger.warn("Could not register {} limiter in JMX: {}", name, e.getMessage());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedQueueFullCount() {
+        return rejectedQueueFull.get();
+    }
+
+    public long getRejectedTimeoutCount() {
+        return rejectedTimeout.get();
+    }
+
+    @Override
+    public String toString() {
+        return name +
+                ": limit= " + getLimit() +
+                ", inFlight= " + getInFlight() +
+                ", queued= " + getQueueDepth() +
+                ", accepted= " + getAcceptedCount() +
+                ", rejected (queue full)= " + getRejectedQueueFullCount() +
+                ", rejected (timeout)= " + getRejectedTimeoutCount();
+    }
+}
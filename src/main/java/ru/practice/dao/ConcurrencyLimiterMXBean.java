@@ -0,0 +1,18 @@
+package ru.practice.dao;
+
+public interface ConcurrencyLimiterMXBean {
+
+    String getName();
+
+    int getLimit();
+
+    int getInFlight();
+
+    int getQueueDepth();
+
+    long getAcceptedCount();
+
+    long getRejectedQueueFullCount();
+
+    long getRejectedTimeoutCount();
+}
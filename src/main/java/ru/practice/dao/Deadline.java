@@ -0,0 +1,97 @@
+package ru.practice.dao;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Point in time by which a call has to finish. The deadline of the current thread applies to every
+ * {@link UserDAOImpl} call made inside it, on top of the DAO's default per-operation timeouts:
+ * <pre>
+ * Optional&lt;User&gt; user = Deadline.within(Duration.ofMillis(200), () -&gt; userService.read(id));
+ * </pre>
+ * Nested deadlines never extend an outer one.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        if (timeout == null) {
+            throw new NullPointerException("Timeout cant be null");
+        }
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(current.get());
+    }
+
+    public static <T> T within(Duration timeout, Supplier<T> call) {
+        try (Scope ignored = after(timeout).enter()) {
+            return call.get();
+        }
+    }
+
+    public static void within(Duration timeout, Runnable call) {
+        try (Scope ignored = after(timeout).enter()) {
+            call.run();
+        }
+    }
+
+    /**
+     * Carries the deadline of the calling thread over to a task that runs on another thread.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Deadline deadline = current.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope ignored = deadline.enter()) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * Makes this deadline (or the current one, if it expires earlier) current until the scope is closed.
+     */
+    public Scope enter() {
+        Deadline previous = current.get();
+        current.set(previous != null && previous.expiresAtNanos - expiresAtNanos < 0 ? previous : this);
+        return () -> {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        };
+    }
+
+    public long remainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline in " + Duration.ofNanos(remainingNanos()).toMillis() + " ms";
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.practice.dao;
+
+/**
+ * Thrown when a database call runs out of time: the deadline expired before the call, the statement was
+ * cancelled by its query timeout or a lock could not be taken within the lock timeout.
+ * The transaction of the call is rolled back.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,172 @@
+package ru.practice.dao;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.services.Emails;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings {@code users.email} of a PostgreSQL database to the form {@link Emails#normalize} writes and makes
+ * the database keep it:
+ * <ul>
+ * <li>rows written before normalization are rewritten with {@link Emails#normalize} itself, unless another
+ * user already has that address in some spelling; such conflicts are logged and have to be merged by hand;</li>
+ * <li>once no conflict is left, the check constraint {@code users_email_ascii_normalized} rejects emails with
+ * ASCII upper-case letters or with spaces or control characters at the ends.</li>
+ * </ul>
+ * The database's {@code lower} and {@code trim} are not used: they depend on the ctype and on the Unicode
+ * tables of the server and can disagree with Java on non-ASCII letters, so a constraint built on them could
+ * reject an email the service wrote. The constraint checks only what every normalized email satisfies.
+ * Runs at startup; nodes starting together do the work once.
+ */
+public class EmailNormalization {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailNormalization.class);
+
+    public static final String CONSTRAINT = "users_email_ascii_normalized";
+    /** Compared {@code email = lower(trim(email))}, dropped in favour of {@link #CONSTRAINT}. */
+    static final String LEGACY_CONSTRAINT = "users_email_normalized";
+    private static final int CONFLICTS_TO_LOG = 20;
+
+    private final SessionFactory sessionFactory;
+
+    public EmailNormalization(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * @return the emails of the rows that were rewritten, in their normalized form
+     */
+    public List<String> install() {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            List<String> rewritten = session.doReturningWork(this::normalize);
+
+            transaction.commit();
+            return rewritten;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error while normalizing user emails");
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private List<String> normalize(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("select pg_advisory_xact_lock(hashtext('ru.practice.EmailNormalization'))");
+
+            // Only rows with ASCII capitals, spaces, control or non-ASCII characters can be off the normal form;
+            // which of them are is decided in Java. Spellings are grouped by the address they normalize to.
+            Map<String, List<String>> spellings = new LinkedHashMap<>();
+            Map<String, Integer> ids = new LinkedHashMap<>();
+            try (ResultSet resultSet = statement.executeQuery("select id, email from users "
+                    + "where email ~ '[A-Z]' or email ~ '[^\\x21-\\x7e]'")) {
+                while (resultSet.next()) {
+                    String email = resultSet.getString(2);
+                    String normalized = Emails.normalize(email);
+                    if (!normalized.equals(email)) {
+                        spellings.computeIfAbsent(normalized, key -> new ArrayList<>()).add(email);
+                        ids.put(normalized, resultSet.getInt(1));
+                    }
+                }
+            }
+            if (spellings.isEmpty()) {
+                return addConstraint(statement, List.of());
+            }
+
+            // A row is rewritten only if no other row normalizes to the same address.
+            Set<String> taken = new HashSet<>();
+            try (PreparedStatement select = connection.prepareStatement(
+                    "select email from users where email = any(?)")) {
+                select.setArray(1, connection.createArrayOf("varchar", spellings.keySet().toArray()));
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        taken.add(resultSet.getString(1));
+                    }
+                }
+            }
+
+            List<Integer> rewriteIds = new ArrayList<>();
+            List<String> rewriteEmails = new ArrayList<>();
+            List<String> conflicts = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : spellings.entrySet()) {
+                if (entry.getValue().size() == 1 && !taken.contains(entry.getKey())) {
+                    rewriteIds.add(ids.get(entry.getKey()));
+                    rewriteEmails.add(entry.getKey());
+                } else {
+                    conflicts.addAll(entry.getValue());
+                }
+            }
+
+            // Rewritten users go to the change feed like any other update, so caches and snapshots follow.
+            List<String> rewritten = new ArrayList<>();
+            if (!rewriteIds.isEmpty()) {
+                try (PreparedStatement update = connection.prepareStatement("with rewritten as ("
+                        + "update users u set email = n.email from unnest(?, ?) as n(id, email) "
+                        + "where u.id = n.id "
+                        + "returning u.id, u.email), "
+                        + "changes as ("
+                        + "insert into user_changes (user_id, operation, changed_at) "
+                        + "select id, 'UPDATED', localtimestamp from rewritten) "
+                        + "select email from rewritten")) {
+                    update.setArray(1, connection.createArrayOf("integer", rewriteIds.toArray()));
+                    update.setArray(2, connection.createArrayOf("varchar", rewriteEmails.toArray()));
+                    try (ResultSet resultSet = update.executeQuery()) {
+                        while (resultSet.next()) {
+                            rewritten.add(resultSet.getString(1));
+                        }
+                    }
+                }
+                logger.info("Normalized {} user emails", rewritten.size());
+            }
+
+            if (!conflicts.isEmpty()) {
+                logger.error("Emails of other users differ only in case or spaces from {}, merge these users; "
+                        + "{} is not added until then",
+                        conflicts.subList(0, Math.min(conflicts.size(), CONFLICTS_TO_LOG)), CONSTRAINT);
+                return rewritten;
+            }
+            return addConstraint(statement, rewritten);
+        }
+    }
+
+    private List<String> addConstraint(Statement statement, List<String> rewritten) throws SQLException {
+        boolean guarded;
+        try (ResultSet resultSet = statement.executeQuery("select count(*) from pg_constraint "
+                + "where conname = '" + CONSTRAINT + "' and conrelid = to_regclass('users')")) {
+            guarded = resultSet.next() && resultSet.getLong(1) > 0;
+        }
+        if (!guarded) {
+            statement.execute("alter table users drop constraint if exists " + LEGACY_CONSTRAINT);
+            statement.execute("alter table users add constraint " + CONSTRAINT
+                    + " check (email !~ '[A-Z]' and email !~ '^[\\x01-\\x20]|[\\x01-\\x20]$')");
+            logger.info("Added {} constraint", CONSTRAINT);
+        }
+        return rewritten;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practice.dao;
+
+/**
+ * Thrown when a call is rejected by admission control instead of waiting for the database.
+ * Callers should back off and retry later.
+ */
+public class OverloadException extends RuntimeException {
+
+    public OverloadException(String message) {
+        super(message);
+    }
+}
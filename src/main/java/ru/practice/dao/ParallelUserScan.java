@@ -0,0 +1,225 @@
+package ru.practice.dao;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.models.User;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the whole users table in parallel for jobs like export or backfills. The id space between the
+ * smallest and the largest id is split into ranges by a {@link Spliterator}, and every range is read in
+ * keyset pages over its own pooled connection by a worker of a dedicated {@link ForkJoinPool}:
+ * <pre>
+ * try (ParallelUserScan scan = new ParallelUserScan(sessionFactory, 4)) {
+ *     long adults = scan.execute(false, users -&gt; users.filter(user -&gt; user.getAge() &gt;= 18).count());
+ * }
+ * </pre>
+ * Each worker holds a connection while it reads, so the parallelism should not exceed the pool size.
+ * Users are read by stateless sessions and are detached; the scan does not see a single snapshot of the
+ * table, rows changed while it runs may be read before or after the change.
+ */
+public class ParallelUserScan implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelUserScan.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    /**
+     * Ranges per worker, so a worker that finishes early can take over the rest of the work.
+     */
+    private static final int RANGES_PER_WORKER = 8;
+
+    private final SessionFactory sessionFactory;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int pageSize;
+
+    public ParallelUserScan(SessionFactory sessionFactory, int parallelism) {
+        this(sessionFactory, parallelism, DEFAULT_PAGE_SIZE);
+    }
+
+    public ParallelUserScan(SessionFactory sessionFactory, int parallelism, int pageSize) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size should be positive");
+        }
+
+        this.sessionFactory = sessionFactory;
+        this.parallelism = parallelism;
+        this.pageSize = pageSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Passes every user to the consumer. When unordered the consumer is called from several threads at once.
+     */
+    public void forEach(boolean ordered, Consumer<? super User> consumer) {
+        execute(ordered, users -> {
+            if (ordered) {
+                users.forEachOrdered(consumer);
+            } else {
+                users.forEach(consumer);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs a stream pipeline over all users on the scan's workers, e.g. a filter and a collector.
+     * An ordered stream encounters users in id order.
+     */
+    public <R> R execute(boolean ordered, Function<Stream<User>, R> pipeline) {
+        long startNanos = System.nanoTime();
+        R result = pool.submit(() -> pipeline.apply(stream(ordered))).join();
+        logger.info("Parallel users scan finished in {} ms, parallelism = {}, ordered = {}",
+                (System.nanoTime() - startNanos) / 1_000_000, parallelism, ordered);
+        return result;
+    }
+
+    /**
+     * Parallel stream over all users. Its terminal operation runs in the common pool unless it is
+     * started from {@link #execute(boolean, Function)}.
+     */
+    public Stream<User> stream(boolean ordered) {
+        Stream<User> users = StreamSupport.stream(spliterator(), true);
+        return ordered ? users : users.unordered();
+    }
+
+    public Spliterator<User> spliterator() {
+        long[] bounds = readIdBounds();
+        if (bounds == null) {
+            return new IdRangeSpliterator(1, 0, 1);
+        }
+        long width = bounds[1] - bounds[0] + 1;
+        long minRangeWidth = Math.max(pageSize, width / ((long) parallelism * RANGES_PER_WORKER));
+        return new IdRangeSpliterator(bounds[0], bounds[1], minRangeWidth);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private long[] readIdBounds() {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Object[] bounds = session.createSelectionQuery("select min(u.id), max(u.id) from User u", Object[].class)
+                    .getSingleResult();
+            if (bounds[0] == null) {
+                return null;
+            }
+            return new long[]{((Number) bounds[0]).longValue(), ((Number) bounds[1]).longValue()};
+        } catch (Exception e) {
+            logger.error("Error while reading users id range from database");
+            throw e;
+        }
+    }
+
+    private List<User> readPage(StatelessSession session, long afterId, long toId) {
+        return session.createSelectionQuery(
+                        "from User u where u.id > :afterId and u.id <= :toId order by u.id", User.class)
+                .setParameter("afterId", (int) afterId)
+                .setParameter("toId", (int) toId)
+                .setMaxResults(pageSize)
+                .getResultList();
+    }
+
+    /**
+     * Ids from {@code from} to {@code to} inclusive. Splits in halves down to the minimal width and reads
+     * its range page by page when traversed.
+     */
+    private class IdRangeSpliterator implements Spliterator<User> {
+
+        private long from;
+        private final long to;
+        private final long minWidth;
+        private Iterator<User> page;
+
+        IdRangeSpliterator(long from, long to, long minWidth) {
+            this.from = from;
+            this.to = to;
+            this.minWidth = minWidth;
+        }
+
+        @Override
+        public Spliterator<User> trySplit() {
+            if (page != null || to - from + 1 < minWidth * 2) {
+                return null;
+            }
+            long middle = from + (to - from) / 2;
+            IdRangeSpliterator prefix = new IdRangeSpliterator(from, middle, minWidth);
+            from = middle + 1;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super User> action) {
+            // Element-wise traversal is rare for parallel streams; it reads page by page in short sessions
+            if (page == null || !page.hasNext()) {
+                if (from > to) {
+                    return false;
+                }
+                try (StatelessSession session = sessionFactory.openStatelessSession()) {
+                    List<User> users = readPage(session, from - 1, to);
+                    from = users.size() < pageSize ? to + 1 : users.get(users.size() - 1).getId() + 1L;
+                    page = users.iterator();
+                }
+                if (!page.hasNext()) {
+                    return false;
+                }
+            }
+            action.accept(page.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super User> action) {
+            while (page != null && page.hasNext()) {
+                action.accept(page.next());
+            }
+            if (from > to) {
+                return;
+            }
+
+            try (StatelessSession session = sessionFactory.openStatelessSession()) {
+                long afterId = from - 1;
+                List<User> users;
+                do {
+                    users = readPage(session, afterId, to);
+                    users.forEach(action);
+                    if (!users.isEmpty()) {
+                        afterId = users.get(users.size() - 1).getId();
+                    }
+                } while (users.size() == pageSize);
+            } catch (Exception e) {
+                logger.error("Error while scanning users from {} to {}", from, to);
+                throw e;
+            }
+            from = to + 1;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.max(0, to - from + 1);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practice.dao;
+
+import java.time.Duration;
+
+/**
+ * Default time limits of {@link UserDAOImpl} operations. A shorter {@link Deadline} of the calling
+ * thread takes precedence.
+ */
+public class QueryTimeouts {
+
+    private final Duration read;
+    private final Duration scan;
+    private final Duration write;
+
+    /**
+     * @param read  single user and multi-get reads, pages
+     * @param scan  reads of the whole table
+     * @param write saves, updates and deletes, including lock waits
+     */
+    public QueryTimeouts(Duration read, Duration scan, Duration write) {
+        if (read == null || scan == null || write == null) {
+            throw new NullPointerException("Timeouts cant be null");
+        }
+        this.read = read;
+        this.scan = scan;
+        this.write = write;
+    }
+
+    public static QueryTimeouts defaults() {
+        return new QueryTimeouts(Duration.ofSeconds(5), Duration.ofSeconds(60), Duration.ofSeconds(10));
+    }
+
+    public Duration getRead() {
+        return read;
+    }
+
+    public Duration getScan() {
+        return scan;
+    }
+
+    public Duration getWrite() {
+        return write;
+    }
+
+    @Override
+    public String toString() {
+        return "read= " + read.toMillis() + "ms, scan= " + scan.toMillis() + "ms, write= " + write.toMillis() + "ms";
+    }
+}
@@ -0,0 +1,237 @@
+package ru.practice.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries calls that failed for a transient reason with exponential backoff and full jitter: the n-th retry
+ * waits a random time between zero and {@code min(maxDelay, baseDelay * 2^n)}, so writers that collided
+ * do not collide again in lockstep.
+ * <p>
+ * A failure is transient when its SQLState says the transaction was rolled back by the database and may
+ * succeed as is: serialization failure ({@code 40001}), deadlock ({@code 40P01}) or a connection exception
+ * (class {@code 08}). Everything else, e.g. a unique violation ({@code 23505}) or a timeout, is permanent
+ * and thrown right away.
+ * <p>
+ * Retries are limited by a budget shared by all calls: every call adds {@code budgetRatio} of a token up to
+ * {@code maxTokens}, every retry takes a whole token. When the database fails most calls, retries stop after
+ * the budget is spent instead of multiplying the load.
+ */
+public class RetryPolicy implements RetryPolicyMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private final String name;
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final double budgetRatio;
+    private final double maxTokens;
+
+    private double tokens;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+    private final AtomicLong permanentFailures = new AtomicLong();
+
+    /**
+     * @param maxAttempts attempts per call including the first one
+     * @param budgetRatio retries allowed per call on average, e.g. 0.1 for one retry per ten calls
+     * @param maxTokens   retries that can be spent in a burst
+     */
+    public RetryPolicy(String name, int maxAttempts, Duration baseDelay, Duration maxDelay,
+                       double budgetRatio, double maxTokens) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Attempts should be positive");
+        }
+        if (budgetRatio < 0 || maxTokens < 0) {
+            throw new IllegalArgumentException("Retry budget cant be negative");
+        }
+
+        this.name = name;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.budgetRatio = budgetRatio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    /**
+     * Four attempts, 10 ms base and 500 ms maximum delay, one retry per ten calls with bursts of up to 20.
+     */
+    public static RetryPolicy defaults(String name) {
+        return new RetryPolicy(name, 4, Duration.ofMillis(10), Duration.ofMillis(500), 0.1, 20);
+    }
+
+    public <T> T execute(String operation, Supplier<T> call) {
+        calls.incrementAndGet();
+        deposit();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = call.get();
+                if (attempt > 1) {
+                    recovered.incrementAndGet();
+                }
+                return result;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    if (e instanceof DeadlineExceededException || hasSqlState(e)) {
+                        permanentFailures.incrementAndGet();
+                    }
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    exhausted.incrementAndGet();
+                    logger.warn("{} failed after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                if (!withdraw()) {
+                    budgetExhausted.incrementAndGet();
+                    logger.warn("{} failed, retry budget is spent: {}", operation, e.getMessage());
+                    throw e;
+                }
+
+                long delayNanos = delayNanos(attempt);
+                Optional<Deadline> deadline = Deadline.current();
+                if (deadline.isPresent() && deadline.get().remainingNanos() <= delayNanos) {
+                    throw e;
+                }
+
+                retries.incrementAndGet();
+                logger.debug("{} failed with {}, retry {} in {} ms", operation, sqlState(e), attempt,
+                        TimeUnit.NANOSECONDS.toMillis(delayNanos));
+                sleep(delayNanos, e);
+            }
+        }
+    }
+
+    /**
+     * Serialization failures, deadlocks and connection exceptions, wherever they are in the cause chain.
+     */
+    public static boolean isTransient(Throwable e) {
+        if (e instanceof DeadlineExceededException || e instanceof OverloadException) {
+            return false;
+        }
+        String state = sqlState(e);
+        return state != null && (state.equals("40001") || state.equals("40P01") || state.startsWith("08"));
+    }
+
+    /**
+     * Exposes the counters over JMX as {@code ru.practice:type=RetryPolicy,name=<name>}.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName("ru.practice:type=RetryPolicy,name=" + name));
+        } catch (JMException e) {
+            logger.warn("Could not register {} retry policy in JMX: {}", name, e.getMessage());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Calls that succeeded after at least one retry.
+     */
+    public long getRecoveredCount() {
+        return recovered.get();
+    }
+
+    /**
+     * Calls that failed transiently on every attempt.
+     */
+    public long getExhaustedCount() {
+        return exhausted.get();
+    }
+
+    public long getBudgetExhaustedCount() {
+        return budgetExhausted.get();
+    }
+
+    /**
+     * Database failures that were not retried because they would fail again.
+     */
+    public long getPermanentFailureCount() {
+        return permanentFailures.get();
+    }
+
+    public synchronized double getRetryTokens() {
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return name +
+                ": calls= " + getCallCount() +
+                ", retries= " + getRetryCount() +
+                ", recovered= " + getRecoveredCount() +
+                ", exhausted= " + getExhaustedCount() +
+                ", budget exhausted= " + getBudgetExhaustedCount() +
+                ", permanent= " + getPermanentFailureCount();
+    }
+
+    private long delayNanos(int attempt) {
+        long ceiling = Math.min(maxDelayNanos, baseDelayNanos << Math.min(attempt - 1, 30));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + budgetRatio);
+    }
+
+    private synchronized boolean withdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private static void sleep(long nanos, RuntimeException failure) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+
+    private static boolean hasSqlState(Throwable e) {
+        return sqlState(e) != null;
+    }
+
+    private static String sqlState(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null) {
+                return ((SQLException) cause).getSQLState();
+            }
+        }
+        return null;
+    }
+}
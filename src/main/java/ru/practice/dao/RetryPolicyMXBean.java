@@ -0,0 +1,20 @@
+package ru.practice.dao;
+
+public interface RetryPolicyMXBean {
+
+    String getName();
+
+    long getCallCount();
+
+    long getRetryCount();
+
+    long getRecoveredCount();
+
+    long getExhaustedCount();
+
+    long getBudgetExhaustedCount();
+
+    long getPermanentFailureCount();
+
+    double getRetryTokens();
+}
@@ -0,0 +1,92 @@
+package ru.practice.dao;
+
+import ru.practice.models.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link UserDAO} decorator that retries calls failed for a transient reason by {@link RetryPolicy}.
+ * Every {@link UserDAOImpl} call is a transaction of its own that is rolled back on failure, so a retry
+ * repeats the whole transaction. The only ambiguous case is a connection lost during commit, where a retried
+ * save may fail on the unique email of the user it already saved.
+ */
+public class RetryingUserDAO implements UserDAO {
+
+    private final UserDAO userDAO;
+    private final RetryPolicy retryPolicy;
+
+    public RetryingUserDAO(UserDAO userDAO, RetryPolicy retryPolicy) {
+        this.userDAO = userDAO;
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * The identity insert assigns the id before the transaction fails, so every attempt starts from the id
+     * the user came with; otherwise the retry would see a detached entity.
+     */
+    public User save(User user) {
+        int id = user == null ? 0 : user.getId();
+        return retryPolicy.execute("save", () -> {
+            if (user != null) {
+                user.setId(id);
+            }
+            return userDAO.save(user);
+        });
+    }
+
+    public List<User> saveAll(List<User> users) {
+        int[] ids = users == null ? null : new int[users.size()];
+        for (int i = 0; ids != null && i < ids.length; i++) {
+            ids[i] = users.get(i) == null ? 0 : users.get(i).getId();
+        }
+        return retryPolicy.execute("saveAll", () -> {
+            for (int i = 0; ids != null && i < ids.length; i++) {
+                if (users.get(i) != null) {
+                    users.get(i).setId(ids[i]);
+                }
+            }
+            return userDAO.saveAll(users);
+        });
+    }
+
+    public Optional<User> readById(int id) {
+        return retryPolicy.execute("readById", () -> userDAO.readById(id));
+    }
+
+    public Optional<User> readByEmail(String email) {
+        return retryPolicy.execute("readByEmail", () -> userDAO.readByEmail(email));
+    }
+
+    public List<User> readByEmails(Collection<String> emails) {
+        return retryPolicy.execute("readByEmails", () -> userDAO.readByEmails(emails));
+    }
+
+    public List<User> readAll() {
+        return retryPolicy.execute("readAll", userDAO::readAll);
+    }
+
+    public List<User> readPage(int afterId, int limit) {
+        return retryPolicy.execute("readPage", () -> userDAO.readPage(afterId, limit));
+    }
+
+    public List<User> readByIds(Collection<Integer> ids) {
+        return retryPolicy.execute("readByIds", () -> userDAO.readByIds(ids));
+    }
+
+    public User update(User user) {
+        return retryPolicy.execute("update", () -> userDAO.update(user));
+    }
+
+    public void delete(int id) {
+        retryPolicy.execute("delete", () -> {
+            userDAO.delete(id);
+            return null;
+        });
+    }
+}
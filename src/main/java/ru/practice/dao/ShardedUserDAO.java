@@ -0,0 +1,526 @@
+package ru.practice.dao;
+
+import jakarta.persistence.EntityExistsException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.models.EmailRoute;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * {@link UserDAO} that spreads users over several databases.
+ * <p>
+ * New users are placed on the shard chosen by the hash of their email, and every shard hands out ids
+ * from its own residue class ({@code id % shardCount == shard}), so reads by id go straight to one shard.
+ * When an email is changed to a value whose home shard differs from the shard holding the user,
+ * an entry in {@code user_email_routes} on the new home shard points to the right place.
+ * <p>
+ * The home shard keeps its emails unique: a route is inserted only if neither a local user nor another route
+ * has the email, and a user is saved there only if no route has it. Both sides take the same transaction-level
+ * advisory lock per email first, so two racing writers cannot both see the email free.
+ */
+public class ShardedUserDAO implements UserDAO, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedUserDAO.class);
+
+    private static final int EMAIL_LOCK = "ru.practice.ShardedUserDAO.email".hashCode();
+
+    private final List<SessionFactory> sessionFactories;
+    private final List<UserDAOImpl> shards;
+    private final ExecutorService executor;
+
+    public ShardedUserDAO(List<SessionFactory> sessionFactories) {
+        if (sessionFactories == null || sessionFactories.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        this.sessionFactories = List.copyOf(sessionFactories);
+        this.shards = new ArrayList<>(sessionFactories.size());
+        for (SessionFactory sessionFactory : this.sessionFactories) {
+            shards.add(new UserDAOImpl(sessionFactory));
+        }
+        this.executor = Executors.newFixedThreadPool(sessionFactories.size());
+
+        for (int shard = 0; shard < this.sessionFactories.size(); shard++) {
+            alignIdSequence(shard);
+            normalizeEmails(shard);
+        }
+        logger.info("Sharded user DAO started with {} shards", shards.size());
+    }
+
+    /**
+     * Builds one session factory per shard described in the given properties:
+     * <pre>
+     * shards.count=2
+     * shards.0.url=jdbc:postgresql://host0:5432/user_service
+     * shards.0.username=postgres
+     * shards.0.password=admin
+     * </pre>
+     * Everything else (dialect, ddl mode, ...) is taken from {@code hibernate.properties};
+     * {@code hibernate.*} keys given here override it for every shard.
+     */
+    public static ShardedUserDAO fromProperties(Properties properties) {
+        int count = Integer.parseInt(properties.getProperty("shards.count", "0"));
+        if (count <= 0) {
+            throw new IllegalArgumentException("shards.count should be positive");
+        }
+
+        List<SessionFactory> sessionFactories = new ArrayList<>(count);
+        try {
+            for (int shard = 0; shard < count; shard++) {
+                String prefix = "shards." + shard + ".";
+                String url = properties.getProperty(prefix + "url");
+                if (url == null) {
+                    throw new IllegalArgumentException("Missing " + prefix + "url");
+                }
+
+                Configuration configuration = new Configuration()
+                        .addAnnotatedClass(User.class)
+                        .addAnnotatedClass(UserChange.class)
+                        .addAnnotatedClass(EmailRoute.class);
+                for (String key : properties.stringPropertyNames()) {
+                    if (key.startsWith("hibernate.")) {
+                        configuration.setProperty(key, properties.getProperty(key));
+                    }
+                }
+                configuration.setProperty("hibernate.connection.url", url);
+                String username = properties.getProperty(prefix + "username");
+                if (username != null) {
+                    configuration.setProperty("hibernate.connection.username", username);
+                }
+                String password = properties.getProperty(prefix + "password");
+                if (password != null) {
+                    configuration.setProperty("hibernate.connection.password", password);
+                }
+                sessionFactories.add(configuration.buildSessionFactory());
+            }
+            return new ShardedUserDAO(sessionFactories);
+        } catch (RuntimeException e) {
+            sessionFactories.forEach(SessionFactory::close);
+            throw e;
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int shardForId(int id) {
+        return Math.floorMod(id, shards.size());
+    }
+
+    public int shardForEmail(String email) {
+        return Math.floorMod(email.hashCode(), shards.size());
+    }
+
+    public User save(User user) {
+        if (user == null) {
+            throw new NullPointerException("User cant be null");
+        }
+
+        int shard = shardForEmail(user.getEmail());
+        logger.debug("Saving user to shard {}", shard);
+        return shards.get(shard).save(user, session -> checkNotRouted(session, List.of(user.getEmail())));
+    }
+
+    /**
+     * Saves every shard's part of the batch in its own transaction, so the batch is atomic per shard only.
+     */
+    public List<User> saveAll(List<User> users) {
+        if (users == null) {
+            throw new NullPointerException("Users cant be null");
+        }
+
+        Map<Integer, List<User>> byShard = new HashMap<>();
+        for (User user : users) {
+            if (user == null) {
+                throw new NullPointerException("User cant be null");
+            }
+            byShard.computeIfAbsent(shardForEmail(user.getEmail()), shard -> new ArrayList<>()).add(user);
+        }
+
+        List<Future<List<User>>> futures = new ArrayList<>(byShard.size());
+        for (Map.Entry<Integer, List<User>> entry : byShard.entrySet()) {
+            UserDAOImpl dao = shards.get(entry.getKey());
+            List<String> emails = new ArrayList<>(entry.getValue().size());
+            entry.getValue().forEach(user -> emails.add(user.getEmail()));
+            futures.add(executor.submit(Deadline.propagate(
+                    () -> dao.saveAll(entry.getValue(), session -> checkNotRouted(session, emails)))));
+        }
+        await(futures);
+        return users;
+    }
+
+    public Optional<User> readById(int id) {
+        return shards.get(shardForId(id)).readById(id);
+    }
+
+    public Optional<User> readByEmail(String email) {
+        if (email == null) {
+            throw new NullPointerException("Email cant be null");
+        }
+
+        int home = shardForEmail(email);
+        Optional<User> user = shards.get(home).readByEmail(email);
+        if (user.isPresent()) {
+            return user;
+        }
+
+        Integer routed = readRoute(home, email);
+        if (routed == null || routed == home) {
+            return Optional.empty();
+        }
+        logger.debug("Email is routed from shard {} to shard {}", home, routed);
+        return shards.get(routed).readByEmail(email);
+    }
+
+    /**
+     * Asks every shard at once instead of looking up home shards and routes per email: a routed email lives
+     * on some other shard anyway, and one query per shard does not grow with the number of emails.
+     */
+    public List<User> readByEmails(Collection<String> emails) {
+        if (emails == null) {
+            throw new NullPointerException("Emails cant be null");
+        }
+        if (emails.isEmpty()) {
+            return List.of();
+        }
+
+        return merge(scatter(dao -> dao.readByEmails(emails)), Integer.MAX_VALUE);
+    }
+
+    public List<User> readAll() {
+        logger.info("Reading all users from {} shards", shards.size());
+
+        return merge(scatter(UserDAO::readAll), Integer.MAX_VALUE);
+    }
+
+    public List<User> readPage(int afterId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit should be positive");
+        }
+
+        return merge(scatter(dao -> dao.readPage(afterId, limit)), limit);
+    }
+
+    public List<User> readByIds(Collection<Integer> ids) {
+        if (ids == null) {
+            throw new NullPointerException("Ids cant be null");
+        }
+
+        Map<Integer, List<Integer>> byShard = new HashMap<>();
+        for (Integer id : ids) {
+            byShard.computeIfAbsent(shardForId(id), shard -> new ArrayList<>()).add(id);
+        }
+
+        List<Future<List<User>>> futures = new ArrayList<>(byShard.size());
+        for (Map.Entry<Integer, List<Integer>> entry : byShard.entrySet()) {
+            UserDAOImpl dao = shards.get(entry.getKey());
+            futures.add(executor.submit(Deadline.propagate(() -> dao.readByIds(entry.getValue()))));
+        }
+        return merge(await(futures), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Merges lists sorted by id into one sorted list of at most {@code limit} users.
+     */
+    private static List<User> merge(List<List<User>> results, int limit) {
+        PriorityQueue<PeekingIterator> heads =
+                new PriorityQueue<>(Comparator.comparingInt(PeekingIterator::peekId));
+        int total = 0;
+        for (List<User> result : results) {
+            total += result.size();
+            if (!result.isEmpty()) {
+                heads.add(new PeekingIterator(result.iterator()));
+            }
+        }
+
+        List<User> users = new ArrayList<>(Math.min(total, limit));
+        while (!heads.isEmpty() && users.size() < limit) {
+            PeekingIterator head = heads.poll();
+            users.add(head.next());
+            if (head.hasNext()) {
+                heads.add(head);
+            }
+        }
+        return users;
+    }
+
+    public User update(User user) {
+        if (user == null) {
+            throw new NullPointerException("User cant be null");
+        }
+
+        int shard = shardForId(user.getId());
+        UserDAOImpl dao = shards.get(shard);
+        User current = dao.readById(user.getId()).orElseThrow(NoSuchElementException::new);
+
+        String oldEmail = current.getEmail();
+        String newEmail = user.getEmail();
+        boolean emailChanged = !Objects.equals(oldEmail, newEmail);
+
+        // The route is written before the user, so a reader never sees the new email without a way to reach it,
+        // and is taken back if the user could not be updated. An email that stays on its home shard is checked
+        // against that shard's routes in the update's transaction instead.
+        boolean moved = emailChanged && newEmail != null && shardForEmail(newEmail) != shard;
+        boolean routed = moved && writeRoute(shardForEmail(newEmail), newEmail, shard);
+
+        User updated;
+        try {
+            updated = emailChanged && newEmail != null && !moved
+                    ? dao.update(user, session -> checkNotRouted(session, List.of(newEmail)))
+                    : dao.update(user);
+        } catch (RuntimeException e) {
+            if (routed) {
+                try {
+                    deleteRoute(shardForEmail(newEmail), newEmail);
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+
+        if (emailChanged && shardForEmail(oldEmail) != shard) {
+            deleteRoute(shardForEmail(oldEmail), oldEmail);
+        }
+        return updated;
+    }
+
+    public void delete(int id) {
+        int shard = shardForId(id);
+        UserDAOImpl dao = shards.get(shard);
+        Optional<User> current = dao.readById(id);
+
+        dao.delete(id);
+
+        if (current.isPresent() && shardForEmail(current.get().getEmail()) != shard) {
+            deleteRoute(shardForEmail(current.get().getEmail()), current.get().getEmail());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        sessionFactories.forEach(SessionFactory::close);
+    }
+
+    private <T> List<T> scatter(Function<UserDAO, T> operation) {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (UserDAOImpl shard : shards) {
+            futures.add(executor.submit(Deadline.propagate(() -> operation.apply(shard))));
+        }
+        return await(futures);
+    }
+
+    private <T> List<T> await(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            logger.error("Error while working with shards");
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Makes the identity of the shard's users table hand out only ids with {@code id % shardCount == shard},
+     * continuing after the largest id already stored. A sequence aligned by an earlier start is left alone:
+     * {@code alter table} locks the whole table, and moving the sequence back could hand out an id that a node
+     * already running has just taken.
+     */
+    private void alignIdSequence(int shard) {
+        int count = shards.size();
+
+        inTransaction(shard, session -> {
+            Object[] sequence = session.createNativeQuery("select s.seqincrement, pg_sequence_last_value(s.seqrelid) "
+                            + "from pg_sequence s "
+                            + "where s.seqrelid = cast(pg_get_serial_sequence('users', 'id') as regclass)", Object[].class)
+                    .getSingleResult();
+            long increment = ((Number) sequence[0]).longValue();
+            Number last = (Number) sequence[1];
+            if (increment == count && last != null && Math.floorMod(last.longValue(), count) == shard) {
+                logger.debug("Shard {} already generates ids with step {}", shard, count);
+                return null;
+            }
+
+            long max = session.createNativeQuery("select cast(coalesce(max(id), 0) as bigint) from users", Long.class)
+                    .getSingleResult();
+            long next = max + 1;
+            next += Math.floorMod(shard - next, count);
+
+            if (increment != count) {
+                session.createNativeMutationQuery("alter table users alter column id set increment by " + count)
+                        .executeUpdate();
+            }
+            session.createNativeQuery("select setval(pg_get_serial_sequence('users', 'id'), :next, false)", Long.class)
+                    .setParameter("next", next)
+                    .getSingleResult();
+            logger.debug("Shard {} will generate ids from {} with step {}", shard, next, count);
+            return null;
+        });
+    }
+
+    /**
+     * Normalizes the emails written before normalization. A rewritten email may hash to another shard than
+     * the one holding the user, so it gets a route there like an updated email.
+     */
+    private void normalizeEmails(int shard) {
+        for (String email : new EmailNormalization(sessionFactories.get(shard)).install()) {
+            if (shardForEmail(email) != shard) {
+                try {
+                    writeRoute(shardForEmail(email), email, shard);
+                } catch (EntityExistsException e) {
+                    logger.error("Normalized email of a user on shard {} is taken on shard {}, merge these users",
+                            shard, shardForEmail(email));
+                }
+            }
+        }
+    }
+
+    private Integer readRoute(int shard, String email) {
+        try (Session session = sessionFactories.get(shard).openSession()) {
+            EmailRoute route = session.find(EmailRoute.class, email);
+            return route == null ? null : route.getShard();
+        } catch (Exception e) {
+            logger.error("Error while reading email route from shard {}", shard);
+            throw e;
+        }
+    }
+
+    /**
+     * Claims the email on its home shard for a user on the target shard.
+     *
+     * @return false if the route was already there
+     * @throws EntityExistsException if a user of the home shard or a route to another shard has the email
+     */
+    private boolean writeRoute(int shard, String email, int target) {
+        return inTransaction(shard, session -> {
+            lockEmails(session, List.of(email));
+
+            long local = session.createSelectionQuery("select count(u) from User u where u.email = :email", Long.class)
+                    .setParameter("email", email)
+                    .getSingleResult();
+            EmailRoute route = session.find(EmailRoute.class, email);
+            if (local > 0 || route != null && route.getShard() != target) {
+                throw new EntityExistsException("Email is already taken");
+            }
+            if (route != null) {
+                return false;
+            }
+            // persist, not merge: a route of another user is never overwritten, a racing insert fails with 23505
+            session.persist(new EmailRoute(email, target));
+            return true;
+        });
+    }
+
+    /**
+     * Runs in the transaction that writes users with these emails to their home shard.
+     */
+    private static void checkNotRouted(Session session, Collection<String> emails) {
+        lockEmails(session, emails);
+
+        List<EmailRoute> routes = session.createSelectionQuery("from EmailRoute r where r.email in :emails",
+                        EmailRoute.class)
+                .setParameter("emails", emails)
+                .getResultList();
+        if (!routes.isEmpty()) {
+            throw new EntityExistsException("Email is already taken");
+        }
+    }
+
+    /**
+     * Takes the per-email advisory locks until the end of the transaction, in sorted order so that two batches
+     * never wait for each other. The subquery's volatile select list keeps the planner from skipping the calls.
+     */
+    private static void lockEmails(Session session, Collection<String> emails) {
+        String[] sorted = emails.toArray(new String[0]);
+        Arrays.sort(sorted);
+
+        session.createNativeQuery("select count(*) from ("
+                        + "select pg_advisory_xact_lock(:lock, hashtext(e.email)) "
+                        + "from unnest(cast(:emails as varchar[])) e(email)) l", Long.class)
+                .setParameter("lock", EMAIL_LOCK)
+                .setParameter("emails", sorted)
+                .getSingleResult();
+    }
+
+    private void deleteRoute(int shard, String email) {
+        inTransaction(shard, session -> {
+            EmailRoute route = session.find(EmailRoute.class, email);
+            if (route != null) {
+                session.remove(route);
+            }
+            return null;
+        });
+    }
+
+    private <T> T inTransaction(int shard, Function<Session, T> work) {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactories.get(shard).openSession();
+            transaction = session.beginTransaction();
+
+            T result = work.apply(session);
+
+            transaction.commit();
+            return result;
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error while working with shard {}", shard);
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static class PeekingIterator {
+
+        private final Iterator<User> iterator;
+        private User next;
+
+        PeekingIterator(Iterator<User> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.next();
+        }
+
+        int peekId() {
+            return next.getId();
+        }
+
+        boolean hasNext() {
+            return next != null;
+        }
+
+        User next() {
+            User current = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practice.dao;
+
+import ru.practice.models.UserChange;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Ordered log of user mutations written by {@link UserDAOImpl} in the same transaction as the change itself.
+ * Consumers remember the id of the last change they applied and ask only for what came after it.
+ * <p>
+ * Ids are taken when the change is inserted, not when it commits, so a slow transaction can commit an id
+ * below changes that are already visible. The feed therefore serves changes only up to a horizon below which
+ * no transaction is still running; changes above it are held back until the transactions before them end.
+ */
+public interface UserChangeFeed {
+
+    /**
+     * Changes after the cursor up to the horizon, oldest first.
+     */
+    List<UserChange> readAfter(long cursor, int batchSize);
+
+    /**
+     * Id of the latest change below the horizon, 0 when there is none. Every change up to it has committed,
+     * so reading the table after taking it and then following the feed from it misses no change.
+     */
+    long readHead();
+
+    /**
+     * Id of the oldest change still kept, 0 when the log is empty. A consumer whose cursor is below
+     * {@code readTail() - 1} may have missed purged changes and has to start over from the table.
+     */
+    long readTail();
+
+    /**
+     * Passes all changes after the cursor to the consumer batch by batch and returns the new cursor.
+     */
+    long streamAfter(long cursor, int batchSize, Consumer<List<UserChange>> consumer);
+
+    /**
+     * Removes changes up to the given cursor that are superseded by a later change of the same user.
+     */
+    int compact(long upToCursor);
+
+    /**
+     * Removes changes made before the given time, except the latest change, which keeps the head of the
+     * log in place so consumers can tell that changes after their cursor were purged (see {@link #readTail}).
+     */
+    int purgeBefore(LocalDateTime time);
+}
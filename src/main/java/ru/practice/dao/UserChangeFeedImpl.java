@@ -0,0 +1,213 @@
+package ru.practice.dao;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.models.UserChange;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * On PostgreSQL the horizon is found with fences: the last id taken from the change sequence, read before the
+ * transaction snapshot. Every writer holds a transaction id before it takes a change id (see
+ * {@link UserDAOImpl}), so once the oldest running transaction is newer than everything running at the fence,
+ * all ids up to the fence have committed or rolled back. An idle fence resolves at once; under load the horizon
+ * trails the head by about one write transaction. The change sequence must not cache values per session.
+ * <p>
+ * Other databases have no horizon and serve every visible change.
+ */
+public class UserChangeFeedImpl implements UserChangeFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeFeedImpl.class);
+
+    private final SessionFactory sessionFactory;
+    private final boolean postgres;
+
+    // Guarded by this
+    private long horizon;
+    private Fence fence;
+
+    public UserChangeFeedImpl(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+        this.postgres = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+    }
+
+    public List<UserChange> readAfter(long cursor, int batchSize) {
+        logger.debug("Reading user changes after cursor {}, batch size = {}", cursor, batchSize);
+
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            return readAfter(session, cursor, batchSize, readHorizon(session));
+        } catch (Exception e) {
+            logger.error("Error while reading user changes from database");
+            throw e;
+        }
+    }
+
+    private static List<UserChange> readAfter(Session session, long cursor, int batchSize, long horizon) {
+        return session.createSelectionQuery(
+                        "from UserChange c where c.id > :cursor and c.id <= :horizon order by c.id", UserChange.class)
+                .setParameter("cursor", cursor)
+                .setParameter("horizon", horizon)
+                .setMaxResults(batchSize)
+                .getResultList();
+    }
+
+    public long readHead() {
+        try (Session session = sessionFactory.openSession()) {
+            long horizon = readHorizon(session);
+            return session.createSelectionQuery(
+                            "select coalesce(max(c.id), 0) from UserChange c where c.id <= :horizon", Long.class)
+                    .setParameter("horizon", horizon)
+                    .getSingleResult();
+        } catch (Exception e) {
+            logger.error("Error while reading head of user changes from database");
+            throw e;
+        }
+    }
+
+    public long readTail() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createSelectionQuery("select coalesce(min(c.id), 0) from UserChange c", Long.class)
+                    .getSingleResult();
+        } catch (Exception e) {
+            logger.error("Error while reading tail of user changes from database");
+            throw e;
+        }
+    }
+
+    public long streamAfter(long cursor, int batchSize, Consumer<List<UserChange>> consumer) {
+        logger.debug("Streaming user changes after cursor {}, batch size = {}", cursor, batchSize);
+
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            long horizon = readHorizon(session);
+            List<UserChange> batch = readAfter(session, cursor, batchSize, horizon);
+
+            while (!batch.isEmpty()) {
+                consumer.accept(batch);
+                cursor = batch.get(batch.size() - 1).getId();
+
+                if (batch.size() < batchSize) {
+                    break;
+                }
+                batch = readAfter(session, cursor, batchSize, horizon);
+            }
+            return cursor;
+        } catch (Exception e) {
+            logger.error("Error while streaming user changes from database");
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the id up to which no change can still commit. Takes two statements: the sequence has to be
+     * read before the snapshot that tells which transactions were running.
+     */
+    private long readHorizon(Session session) {
+        if (!postgres) {
+            return Long.MAX_VALUE;
+        }
+
+        long lastId = session.createNativeQuery("select coalesce(pg_sequence_last_value("
+                        + "cast(pg_get_serial_sequence('user_changes', 'id') as regclass)), 0)", Long.class)
+                .getSingleResult();
+        Object[] snapshot = session.createNativeQuery("select "
+                        + "cast(cast(pg_snapshot_xmin(s.snapshot) as text) as bigint), "
+                        + "cast(cast(pg_snapshot_xmax(s.snapshot) as text) as bigint) "
+                        + "from (select pg_current_snapshot() as snapshot) s", Object[].class)
+                .getSingleResult();
+        long xmin = ((Number) snapshot[0]).longValue();
+        long xmax = ((Number) snapshot[1]).longValue();
+
+        synchronized (this) {
+            if (fence != null && xmin >= fence.xmax) {
+                horizon = Math.max(horizon, fence.lastId);
+                fence = null;
+            }
+            if (xmin >= xmax) {
+                // Nothing was running when the snapshot was taken
+                horizon = Math.max(horizon, lastId);
+            } else if (fence == null) {
+                // Kept until it resolves; replacing it on every read would starve the horizon under load
+                fence = new Fence(lastId, xmax);
+            }
+            return horizon;
+        }
+    }
+
+    public int compact(long upToCursor) {
+        logger.info("Compacting user changes up to cursor {}", upToCursor);
+
+        return executeUpdate(session -> session.createMutationQuery(
+                        "delete from UserChange c where c.id <= :cursor and exists " +
+                                "(select 1 from UserChange n where n.userId = c.userId and n.id > c.id)")
+                .setParameter("cursor", upToCursor)
+                .executeUpdate());
+    }
+
+    public int purgeBefore(LocalDateTime time) {
+        logger.info("Purging user changes before {}", time);
+
+        if (time == null) {
+            throw new NullPointerException("Time cant be null");
+        }
+
+        return executeUpdate(session -> session.createMutationQuery(
+                        "delete from UserChange c where c.changedAt < :time "
+                                + "and c.id < (select max(l.id) from UserChange l)")
+                .setParameter("time", time)
+                .executeUpdate());
+    }
+
+    private int executeUpdate(ToIntFunction<Session> work) {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            int removed = work.applyAsInt(session);
+
+            transaction.commit();
+            logger.info("{} user changes were removed", removed);
+            return removed;
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error while removing user changes from database");
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static class Fence {
+
+        private final long lastId;
+        private final long xmax;
+
+        Fence(long lastId, long xmax) {
+            this.lastId = lastId;
+            this.xmax = xmax;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package ru.practice.dao;
 
 import ru.practice.models.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,12 +10,32 @@ public interface UserDAO {
 
     User save(User user);
 
+    /**
+     * Saves all users in one transaction: either every user is saved or none.
+     */
+    List<User> saveAll(List<User> users);
+
     Optional<User> readById(int id);
 
     Optional<User> readByEmail(String email);
 
+    /**
+     * Users with the given emails ordered by id, one query for the whole collection; missing emails are skipped.
+     */
+    List<User> readByEmails(Collection<String> emails);
+
     List<User> readAll();
 
+    /**
+     * Up to {@code limit} users with id greater than {@code afterId}, ordered by id.
+     */
+    List<User> readPage(int afterId, int limit);
+
+    /**
+     * Users with the given ids ordered by id; missing ids are skipped.
+     */
+    List<User> readByIds(Collection<Integer> ids);
+
     User update(User user);
 
     void delete(int id);
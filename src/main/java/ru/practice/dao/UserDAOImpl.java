@@ -1,57 +1,216 @@
 package ru.practice.dao;
 
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Root;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.TransactionException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.exception.LockTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.practice.jfr.UserDAOEvent;
 import ru.practice.models.User;
-
+import ru.practice.models.UserChange;
+import ru.practice.sql.SqlCallTracker;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class UserDAOImpl implements UserDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(UserDAOImpl.class);
 
     private final SessionFactory sessionFactory;
+    private final QueryTimeouts timeouts;
+    private final Dialect dialect;
+    private final AtomicLong timeoutCount = new AtomicLong();
 
     public UserDAOImpl(SessionFactory sessionFactory) {
+        this(sessionFactory, QueryTimeouts.defaults());
+    }
+
+    public UserDAOImpl(SessionFactory sessionFactory, QueryTimeouts timeouts) {
         this.sessionFactory = sessionFactory;
+        this.timeouts = timeouts;
+        this.dialect = sessionFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    /**
+     * Number of calls that failed with {@link DeadlineExceededException}.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
     }
 
     public User save(User user) {
+        return save(user, null);
+    }
+
+    /**
+     * Saves the user and runs {@code check} in the same transaction before the commit; a check that throws
+     * rolls the insert back. {@link ShardedUserDAO} uses it to keep emails unique across shards.
+     */
+    User save(User user, Consumer<Session> check) {
         if (user == null) {
             throw new NullPointerException("User cant be null");
         }
 
         Session session = null;
         Transaction transaction = null;
+        UserDAOEvent event = UserDAOEvent.start("save", 0);
 
         try {
             session = sessionFactory.openSession();
-            transaction = session.beginTransaction();
+            event.sessionOpened();
+            transaction = begin(session, timeouts.getWrite());
 
             session.persist(user);
+            session.persist(new UserChange(user.getId(), UserChange.Operation.CREATED));
+            if (check != null) {
+                check.accept(session);
+            }
 
+            event.committing();
             transaction.commit();
+            event.committed(user.getId(), 1);
             logger.info("User was saved to DB");
 
             return user;
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
+            event.failed();
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw failure(e, "saving user");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            event.finish();
+        }
+    }
+
+    public List<User> saveAll(List<User> users) {
+        return saveAll(users, null);
+    }
+
+    /**
+     * Saves the users and runs {@code check} in the same transaction before the commit, like
+     * {@link #save(User, Consumer)}.
+     */
+    List<User> saveAll(List<User> users, Consumer<Session> check) {
+        logger.info("Saving {} users operation", users == null ? 0 : users.size());
+
+        if (users == null) {
+            throw new NullPointerException("Users cant be null");
+        }
+        for (User user : users) {
+            if (user == null) {
+                throw new NullPointerException("User cant be null");
+            }
+        }
+
+        Session session = null;
+        Transaction transaction = null;
+        UserDAOEvent event = UserDAOEvent.start("saveAll", 0);
+
+        try {
+            session = sessionFactory.openSession();
+            event.sessionOpened();
+            transaction = begin(session, timeouts.getWrite());
+
+            if (dialect instanceof PostgreSQLDialect) {
+                insertAll(session, users);
+            } else {
+                for (User user : users) {
+                    session.persist(user);
+                    session.persist(new UserChange(user.getId(), UserChange.Operation.CREATED));
+                }
+            }
+            if (check != null) {
+                check.accept(session);
+            }
+
+            event.committing();
+            transaction.commit();
+            event.committed(0, users.size());
+            logger.info("{} users were saved to DB", users.size());
+
+            return users;
+        } catch (RuntimeException e) {
+            event.failed();
             if (transaction != null && transaction.getStatus().isActive()) {
                 transaction.rollback();
             }
-            logger.error("Error while saving user in database");
-            throw e;
+            throw failure(e, "saving users");
         } finally {
             if (session != null) {
                 session.close();
             }
+            event.finish();
+        }
+    }
+
+    /**
+     * Inserts the users and their change log rows with one statement. Identity ids keep Hibernate from
+     * batching inserts, so persisting each user would cost two round trips per user.
+     */
+    private static void insertAll(Session session, List<User> users) {
+        int size = users.size();
+        String[] names = new String[size];
+        String[] emails = new String[size];
+        int[] ages = new int[size];
+        LocalDateTime[] createdAts = new LocalDateTime[size];
+        for (int i = 0; i < size; i++) {
+            User user = users.get(i);
+            if (user.getCreatedAt() == null) {
+                user.setCreatedAt(LocalDateTime.now());
+            }
+            names[i] = user.getName();
+            emails[i] = user.getEmail();
+            ages[i] = user.getAge();
+            createdAts[i] = user.getCreatedAt();
+        }
+
+        List<Object[]> rows = session.createNativeQuery("with inserted as ("
+                        + "insert into users (name, email, age, created_at) "
+                        + "select * from unnest(cast(:names as varchar[]), cast(:emails as varchar[]), "
+                        + "cast(:ages as integer[]), cast(:createdAts as timestamp[])) "
+                        + "returning id, email), "
+                        + "changes as ("
+                        + "insert into user_changes (user_id, operation, changed_at) "
+                        + "select id, 'CREATED', localtimestamp from inserted) "
+                        + "select id, email from inserted", Object[].class)
+                .setParameter("names", names)
+                .setParameter("emails", emails)
+                .setParameter("ages", ages)
+                .setParameter("createdAts", createdAts)
+                .getResultList();
+
+        // The order of returned rows is not defined; emails are unique, so they tell the users apart
+        Map<String, Integer> ids = new HashMap<>(size * 2);
+        for (Object[] row : rows) {
+            ids.put((String) row[1], ((Number) row[0]).intValue());
+        }
+        for (User user : users) {
+            user.setId(ids.get(user.getEmail()));
         }
     }
 
@@ -59,14 +218,31 @@ public class UserDAOImpl implements UserDAO {
         logger.info("Reading user by id operation");
         logger.debug("Searching user in DB, id = {}", id);
 
-        try(Session session = sessionFactory.openSession()) {
-            User user = session.find(User.class, id);
+        Session session = null;
+        UserDAOEvent event = UserDAOEvent.start("readById", id);
+
+        try {
+            session = sessionFactory.openSession();
+            event.sessionOpened();
+            int timeout = queryTimeout(timeouts.getRead());
+
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaQuery<User> byId = builder.createQuery(User.class);
+            Root<User> root = byId.from(User.class);
+            byId.select(root).where(builder.equal(root.get("id"), id));
+            User user = session.createQuery(byId).setTimeout(timeout).uniqueResult();
+            event.completed(id, user == null ? 0 : 1);
             logger.debug("Found user: {}", user);
             logger.info("Reading user by id operation is successful");
             return Optional.ofNullable(user);
-        } catch (Exception e) {
-            logger.error("Error while reading user by id from database");
-            throw e;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw failure(e, "reading user by id");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            event.finish();
         }
     }
 
@@ -78,44 +254,207 @@ public class UserDAOImpl implements UserDAO {
             throw new NullPointerException("Email cant be null");
         }
 
-        try(Session session = sessionFactory.openSession()) {
+        Session session = null;
+        UserDAOEvent event = UserDAOEvent.start("readByEmail", 0);
+
+        try {
+            session = sessionFactory.openSession();
+            event.sessionOpened();
+            int timeout = queryTimeout(timeouts.getRead());
+
             CriteriaBuilder builder = session.getCriteriaBuilder();
             CriteriaQuery<User> criteriaQuery = builder.createQuery(User.class);
             Root<User> root = criteriaQuery.from(User.class);
             criteriaQuery.select(root).where(builder.equal(root.get("email"), email));
-            List<User> users = session.createQuery(criteriaQuery).getResultList();
+            List<User> users = session.createQuery(criteriaQuery).setTimeout(timeout).getResultList();
+            event.completed(users.isEmpty() ? 0 : users.get(0).getId(), users.size());
 
             User user = users.isEmpty() ? null : users.get(0);
             logger.debug("Found user: {}", user);
             logger.info("Reading user by email operation is successful");
             return Optional.ofNullable(user);
-        } catch (Exception e) {
-            logger.error("Error while reading user by email from database");
-            throw e;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw failure(e, "reading user by email");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            event.finish();
+        }
+    }
+
+    public List<User> readByEmails(Collection<String> emails) {
+        logger.info("Reading users by emails operation");
+
+        if (emails == null) {
+            throw new NullPointerException("Emails cant be null");
+        }
+        if (emails.isEmpty()) {
+            return List.of();
+        }
+
+        Session session = null;
+        UserDAOEvent event = UserDAOEvent.start("readByEmails", 0);
+
+        try {
+            session = sessionFactory.openSession();
+            event.sessionOpened();
+            int timeout = queryTimeout(timeouts.getRead());
+
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaQuery<User> byEmails = builder.createQuery(User.class);
+            Root<User> root = byEmails.from(User.class);
+            byEmails.select(root)
+                    .where(root.get("email").in(emails))
+                    .orderBy(builder.asc(root.get("id")));
+
+            List<User> users = session.createQuery(byEmails).setTimeout(timeout).getResultList();
+            event.completed(0, users.size());
+
+            logger.info("Reading users by emails operation is successful");
+            logger.debug("Found {} of {} emails", users.size(), emails.size());
+            return users;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw failure(e, "reading users by emails");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            event.finish();
         }
     }
 
     public List<User> readAll() {
         logger.info("Reading all users operation");
 
-        try (Session session = sessionFactory.openSession()) {
+        Session session = null;
+        Transaction transaction = null;
+        UserDAOEvent event = UserDAOEvent.start("readAll", 0);
+
+        try {
+            session = sessionFactory.openSession();
+            event.sessionOpened();
+            transaction = begin(session, timeouts.getScan());
+
             CriteriaBuilder builder = session.getCriteriaBuilder();
             CriteriaQuery<User> all = builder.createQuery(User.class);
             Root<User> root = all.from(User.class);
-            all.select(root);
+            all.select(root).orderBy(builder.asc(root.get("id")));
 
             List<User> users = session.createQuery(all).getResultList();
+            event.committing();
+            transaction.commit();
+            event.committed(0, users.size());
 
             logger.info("Reading all users operation is successful");
             logger.debug("Found users: {}", users);
             return users;
-        } catch (Exception e) {
-            logger.error("Error while reading all users from database");
-            throw e;
+        } catch (RuntimeException e) {
+            event.failed();
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw failure(e, "reading all users");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            event.finish();
+        }
+    }
+
+    public List<User> readPage(int afterId, int limit) {
+        logger.info("Reading users page operation");
+        logger.debug("Reading users page, afterId = {}, limit = {}", afterId, limit);
+
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit should be positive");
+        }
+
+        Session session = null;
+        UserDAOEvent event = UserDAOEvent.start("readPage", 0);
+
+        try {
+            session = sessionFactory.openSession();
+            event.sessionOpened();
+            int timeout = queryTimeout(timeouts.getRead());
+
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaQuery<User> page = builder.createQuery(User.class);
+            Root<User> root = page.from(User.class);
+            page.select(root)
+                    .where(builder.greaterThan(root.get("id"), afterId))
+                    .orderBy(builder.asc(root.get("id")));
+
+            List<User> users = session.createQuery(page).setMaxResults(limit).setTimeout(timeout).getResultList();
+            event.completed(0, users.size());
+
+            logger.info("Reading users page operation is successful");
+            return users;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw failure(e, "reading users page");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            event.finish();
+        }
+    }
+
+    public List<User> readByIds(Collection<Integer> ids) {
+        logger.info("Reading users by ids operation");
+
+        if (ids == null) {
+            throw new NullPointerException("Ids cant be null");
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Session session = null;
+        UserDAOEvent event = UserDAOEvent.start("readByIds", 0);
+
+        try {
+            session = sessionFactory.openSession();
+            event.sessionOpened();
+            int timeout = queryTimeout(timeouts.getRead());
+
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaQuery<User> byIds = builder.createQuery(User.class);
+            Root<User> root = byIds.from(User.class);
+            byIds.select(root)
+                    .where(root.get("id").in(ids))
+                    .orderBy(builder.asc(root.get("id")));
+
+            List<User> users = session.createQuery(byIds).setTimeout(timeout).getResultList();
+            event.completed(0, users.size());
+
+            logger.info("Reading users by ids operation is successful");
+            logger.debug("Found {} of {} users", users.size(), ids.size());
+            return users;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw failure(e, "reading users by ids");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            event.finish();
         }
     }
 
     public User update(User user) {
+        return update(user, null);
+    }
+
+    /**
+     * Updates the user and runs {@code check} in the same transaction before the commit, like
+     * {@link #save(User, Consumer)}.
+     */
+    User update(User user, Consumer<Session> check) {
         logger.info("Updating user operation");
 
         if (user == null) {
@@ -124,33 +463,44 @@ public class UserDAOImpl implements UserDAO {
 
         Session session = null;
         Transaction transaction = null;
+        UserDAOEvent event = UserDAOEvent.start("update", user.getId());
 
         try {
             session = sessionFactory.getCurrentSession();
-            transaction = session.beginTransaction();
+            event.sessionOpened();
+            transaction = begin(session, timeouts.getWrite());
 
-            User userToBeUpdated = session.find(User.class, user.getId());
+            // Locking the row gives the transaction its id before the change id is taken; the change feed
+            // relies on that order to tell when a change id can no longer commit (see UserChangeFeedImpl)
+            User userToBeUpdated = session.find(User.class, user.getId(), LockModeType.PESSIMISTIC_WRITE);
 
-            if (userToBeUpdated == null) throw new NoSuchElementException();
+            if (userToBeUpdated == null) throw new NoSuchElementException("User not exist");
 
             userToBeUpdated.setName(user.getName());
             userToBeUpdated.setEmail(user.getEmail());
             userToBeUpdated.setAge(user.getAge());
+            session.persist(new UserChange(userToBeUpdated.getId(), UserChange.Operation.UPDATED));
+            if (check != null) {
+                check.accept(session);
+            }
 
+            event.committing();
             transaction.commit();
+            event.committed(user.getId(), 1);
             logger.info("User was successfully updated");
 
             return userToBeUpdated;
-        } catch (Exception e) {
-            if (transaction != null) {
+        } catch (RuntimeException e) {
+            event.failed();
+            if (transaction != null && transaction.getStatus().isActive()) {
                 transaction.rollback();
             }
-            logger.error("Error while updating user in database");
-            throw e;
+            throw failure(e, "updating user");
         } finally {
             if (session != null) {
                 session.close();
             }
+            event.finish();
         }
     }
 
@@ -159,25 +509,130 @@ public class UserDAOImpl implements UserDAO {
 
         Session session = null;
         Transaction transaction = null;
+        UserDAOEvent event = UserDAOEvent.start("delete", id);
 
         try {
             session = sessionFactory.getCurrentSession();
-            transaction = session.beginTransaction();
+            event.sessionOpened();
+            transaction = begin(session, timeouts.getWrite());
 
-            session.remove(session.find(User.class, id));
+            session.remove(session.find(User.class, id, LockModeType.PESSIMISTIC_WRITE));
+            session.persist(new UserChange(id, UserChange.Operation.DELETED));
 
+            event.committing();
             transaction.commit();
+            event.committed(id, 1);
             logger.info("User was successfully deleted");
-        } catch (Exception e) {
-            if (transaction != null) {
+        } catch (RuntimeException e) {
+            event.failed();
+            if (transaction != null && transaction.getStatus().isActive()) {
                 transaction.rollback();
             }
-            logger.error("Error while deleting user in database");
-            throw e;
+            throw failure(e, "deleting user");
         } finally {
             if (session != null) {
                 session.close();
             }
+            event.finish();
+        }
+    }
+
+    /**
+     * Starts a transaction limited by the operation's default timeout or the thread's {@link Deadline},
+     * whichever is shorter. Hibernate turns the remaining transaction time into the JDBC query timeout of
+     * every statement, which cancels a running statement on the server. The JDBC timeout has a precision
+     * of seconds, so when a deadline is shorter than the default, PostgreSQL also gets it as the transaction's
+     * statement and lock timeout. That costs a statement, so calls without a deadline skip it; the statement is
+     * marked as {@link SqlCallTracker#SETUP}, so it does not count against statement budgets.
+     */
+    private Transaction begin(Session session, Duration timeout) {
+        long timeoutNanos = remainingNanos(timeout);
+
+        Transaction transaction = session.getTransaction();
+        transaction.setTimeout(toSeconds(timeoutNanos));
+        transaction.begin();
+
+        if (timeoutNanos < timeout.toNanos() && dialect instanceof PostgreSQLDialect) {
+            // Local to the transaction, so the pooled connection gets its defaults back on commit or rollback
+            long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos + 999_999));
+            String timeoutSql = SqlCallTracker.SETUP
+                    + "select set_config('statement_timeout', '" + millis + "ms', true), "
+                    + "set_config('lock_timeout', '" + millis + "ms', true)";
+            try {
+                // A native query rather than doWork, so SqlInspector counts the statement like any other
+                session.createNativeQuery(timeoutSql, Object[].class).getSingleResult();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+        return transaction;
+    }
+
+    /**
+     * JDBC query timeout in seconds for a read that runs without a transaction: one statement, one round trip.
+     */
+    private int queryTimeout(Duration timeout) {
+        return toSeconds(remainingNanos(timeout));
+    }
+
+    private static long remainingNanos(Duration timeout) {
+        long timeoutNanos = timeout.toNanos();
+        Optional<Deadline> deadline = Deadline.current();
+        if (deadline.isPresent()) {
+            timeoutNanos = Math.min(timeoutNanos, deadline.get().remainingNanos());
+        }
+        if (timeoutNanos <= 0) {
+            throw new DeadlineExceededException("Deadline expired before the database call");
+        }
+        return timeoutNanos;
+    }
+
+    private static int toSeconds(long nanos) {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos + 999_999_999));
+    }
+
+    private RuntimeException failure(RuntimeException e, String operation) {
+        if (e instanceof DeadlineExceededException || isTimeout(e)) {
+            timeoutCount.incrementAndGet();
+            logger.warn("Timeout while {}", operation);
+            return e instanceof DeadlineExceededException
+                    ? e
+                    : new DeadlineExceededException("Timeout while " + operation, e);
+        }
+
+        if (e instanceof NoSuchElementException) {
+            logger.info("User not exist while {}", operation);
+            return e;
+        }
+
+        logger.error("Error while {} in database", operation);
+        return e;
+    }
+
+    /**
+     * Recognizes statement cancellation and lock wait timeouts, whichever layer reported them.
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof jakarta.persistence.QueryTimeoutException
+                    || cause instanceof jakarta.persistence.LockTimeoutException
+                    || cause instanceof org.hibernate.QueryTimeoutException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (cause instanceof TransactionException && String.valueOf(cause.getMessage()).contains("timeout")) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                // query_canceled, lock_not_available (PostgreSQL), timeout (H2)
+                if ("57014".equals(state) || "55P03".equals(state) || "HYT00".equals(state)) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,324 @@
+package ru.practice.dao;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional PostgreSQL schema in which {@code users} is range-partitioned by {@code created_at}, one partition
+ * per month ({@code users_p2026_10}) plus a default partition for rows outside of them. Queries filtered by
+ * creation time read only the partitions of their range, and old months can be detached for archiving.
+ * <p>
+ * The {@link ru.practice.models.User} mapping and the DAO queries stay as they are:
+ * <ul>
+ * <li>the primary key of a partitioned table has to include the partition key, so it is {@code (id, created_at)};
+ * ids still come from one sequence and lookups by id use the key's index in every partition;</li>
+ * <li>a unique index cannot cover all partitions either, so uniqueness of emails is kept by the
+ * {@code user_emails} table, which a trigger fills on insert, update and delete; a duplicate fails with the
+ * same unique violation ({@code 23505}) as before.</li>
+ * </ul>
+ * Partitions should exist before rows of their month arrive. Rows that arrive earlier go to the default
+ * partition and are moved out when their month's partition is created, with writes to {@code users} blocked
+ * for the move. {@link #scheduleMaintenance} keeps a few months ahead so that this stays rare.
+ */
+public class UserPartitions {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPartitions.class);
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String PARTITION_PREFIX = "users_p";
+
+    private final SessionFactory sessionFactory;
+    private final int monthsAhead;
+
+    /**
+     * @param monthsAhead months after the current one whose partitions are created in advance
+     */
+    public UserPartitions(SessionFactory sessionFactory, int monthsAhead) {
+        if (monthsAhead < 0) {
+            throw new IllegalArgumentException("Months ahead cant be negative");
+        }
+        this.sessionFactory = sessionFactory;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Switches {@code users} to the partitioned layout. An existing plain table is copied into a partitioned
+     * one and replaced in a single transaction that holds the table lock for the duration of the copy.
+     * A table that is already partitioned only gets its missing partitions. Nodes starting together convert
+     * the table once: the check runs under an advisory lock.
+     */
+    public void install() {
+        boolean converted = inTransaction(connection -> {
+            lockSchema(connection);
+            String kind = queryString(connection, "select c.relkind::text from pg_class c "
+                    + "where c.relname = 'users' and c.relnamespace = current_schema()::regnamespace");
+
+            if ("p".equals(kind)) {
+                return false;
+            }
+
+            logger.info("Converting users table to monthly partitions");
+            boolean exists = "r".equals(kind);
+            YearMonth first = YearMonth.now();
+            if (exists) {
+                execute(connection, "lock table users in access exclusive mode");
+                String oldest = queryString(connection, "select min(created_at)::date::text from users");
+                if (oldest != null) {
+                    first = YearMonth.from(LocalDate.parse(oldest));
+                }
+            }
+
+            execute(connection, "create sequence if not exists users_partitioned_id_seq");
+            execute(connection, "create table users_partitioned ("
+                    + "id integer not null default nextval('users_partitioned_id_seq'), "
+                    + "name varchar(255) not null, "
+                    + "email varchar(255) not null, "
+                    + "age integer not null, "
+                    + "created_at timestamp(6) not null, "
+                    + "primary key (id, created_at)"
+                    + ") partition by range (created_at)");
+            // The default partition is empty until the rows are copied, so no month is blocked here
+            execute(connection, "create table users_default partition of users_partitioned default");
+            for (YearMonth month = first; !month.isAfter(lastMonth()); month = month.plusMonths(1)) {
+                createPartition(connection, "users_partitioned", month);
+            }
+
+            if (exists) {
+                execute(connection, "insert into users_partitioned (id, name, email, age, created_at) "
+                        + "select id, name, email, age, created_at from users");
+                execute(connection, "drop table users");
+            }
+            execute(connection, "alter table users_partitioned rename to users");
+            execute(connection, "alter sequence users_partitioned_id_seq owned by users.id");
+            execute(connection, "select setval('users_partitioned_id_seq', coalesce((select max(id) from users), 0) + 1, false)");
+            execute(connection, "create index if not exists users_created_at_idx on users (created_at)");
+            execute(connection, "create index if not exists users_email_idx on users (email)");
+
+            execute(connection, "create table if not exists user_emails ("
+                    + "email varchar(255) primary key, user_id integer not null)");
+            execute(connection, "delete from user_emails");
+            execute(connection, "insert into user_emails (email, user_id) select email, id from users");
+            execute(connection, "create or replace function users_email_registry() returns trigger language plpgsql as $$ "
+                    + "begin "
+                    + "if tg_op = 'DELETE' or (tg_op = 'UPDATE' and new.email is distinct from old.email) then "
+                    + "delete from user_emails where email = old.email and user_id = old.id; "
+                    + "end if; "
+                    + "if tg_op = 'INSERT' or (tg_op = 'UPDATE' and new.email is distinct from old.email) then "
+                    + "insert into user_emails (email, user_id) values (new.email, new.id); "
+                    + "end if; "
+                    + "return null; "
+                    + "end $$");
+            execute(connection, "create trigger users_email_registry after insert or update of email or delete on users "
+                    + "for each row execute function users_email_registry()");
+            return true;
+        });
+
+        if (converted) {
+            logger.info("Users table is partitioned by month");
+        } else {
+            ensurePartitions();
+        }
+    }
+
+    /**
+     * Creates the partitions of the current month and {@code monthsAhead} months after it that do not exist yet,
+     * moving rows of these months out of the default partition. Every partition is created in its own
+     * transaction: a month that fails is logged and retried by the next run, the months after it are still
+     * created.
+     *
+     * @return the months whose partitions could not be created
+     */
+    public List<YearMonth> ensurePartitions() {
+        List<YearMonth> blocked = new ArrayList<>();
+        for (YearMonth month = YearMonth.now(); !month.isAfter(lastMonth()); month = month.plusMonths(1)) {
+            YearMonth partitionMonth = month;
+            try {
+                inTransaction(connection -> {
+                    lockSchema(connection);
+                    addPartition(connection, partitionMonth);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                logger.warn("Could not create user partition {}: {}", partitionName(month), e.getMessage());
+                blocked.add(month);
+            }
+        }
+        return blocked;
+    }
+
+    /**
+     * Detaches the partitions of months before {@code cutoff}. The detached tables keep their rows for
+     * archiving and their emails become free again.
+     *
+     * @return names of the detached tables
+     */
+    public List<String> detachOlderThan(YearMonth cutoff) {
+        List<String> detached = inTransaction(connection -> {
+            lockSchema(connection);
+            List<String> tables = new ArrayList<>();
+            for (String partition : partitions(connection)) {
+                if (month(partition).isBefore(cutoff)) {
+                    execute(connection, "alter table users detach partition " + partition);
+                    execute(connection, "delete from user_emails e using " + partition + " d where e.user_id = d.id");
+                    tables.add(partition);
+                }
+            }
+            return tables;
+        });
+        logger.info("Detached user partitions: {}", detached);
+        return detached;
+    }
+
+    /**
+     * Names of the monthly partitions attached to {@code users}, oldest first.
+     */
+    public List<String> listPartitions() {
+        return inTransaction(UserPartitions::partitions);
+    }
+
+    /**
+     * Runs {@link #ensurePartitions()} now and then with a fixed delay. A failed run is logged and retried
+     * on the next one.
+     */
+    public ScheduledFuture<?> scheduleMaintenance(ScheduledExecutorService executor, Duration period) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                ensurePartitions();
+            } catch (Exception e) {
+                logger.warn("User partition maintenance failed: {}", e.getMessage());
+            }
+        }, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private YearMonth lastMonth() {
+        return YearMonth.now().plusMonths(monthsAhead);
+    }
+
+    private static void createPartition(Connection connection, String table, YearMonth month) throws SQLException {
+        execute(connection, "create table if not exists " + partitionName(month)
+                + " partition of " + table + " for values from ('" + month.atDay(1)
+                + "') to ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    /**
+     * Creates the month's partition of {@code users}. Rows of the month already in the default partition would
+     * make {@code create table ... partition of} fail, so they are moved into the new partition: taken out of
+     * the default one, the partition is created and they are inserted again through {@code users}, which routes
+     * them there. The email trigger removes and re-adds their emails on the way.
+     */
+    private static void addPartition(Connection connection, YearMonth month) throws SQLException {
+        String partition = partitionName(month);
+        if (queryString(connection, "select to_regclass('" + partition + "')::text") != null) {
+            return;
+        }
+
+        String range = "created_at >= '" + month.atDay(1) + "' and created_at < '" + month.plusMonths(1).atDay(1) + "'";
+        if (!"0".equals(queryString(connection, "select count(*) from users_default where " + range))) {
+            // The parent first: inserts lock users before the default partition, taking them the other way
+            // round could deadlock with them
+            execute(connection, "lock table users in access exclusive mode");
+            execute(connection, "create temp table users_moving (like users) on commit drop");
+            execute(connection, "with moved as (delete from users_default where " + range
+                    + " returning id, name, email, age, created_at) "
+                    + "insert into users_moving (id, name, email, age, created_at) select * from moved");
+            createPartition(connection, "users", month);
+            String moved = queryString(connection, "with inserted as ("
+                    + "insert into users (id, name, email, age, created_at) "
+                    + "select id, name, email, age, created_at from users_moving returning 1) "
+                    + "select count(*) from inserted");
+            logger.info("Moved {} users from the default partition to {}", moved, partition);
+            return;
+        }
+        createPartition(connection, "users", month);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    /**
+     * Serializes schema changes of all nodes until the end of the transaction.
+     */
+    private static void lockSchema(Connection connection) throws SQLException {
+        execute(connection, "select pg_advisory_xact_lock(hashtext('ru.practice.UserPartitions'))");
+    }
+
+    private static List<String> partitions(Connection connection) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+                        + "where i.inhparent = 'users'::regclass and c.relname like ? order by c.relname")) {
+            statement.setString(1, PARTITION_PREFIX + "%");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    partitions.add(resultSet.getString(1));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private static YearMonth month(String partition) {
+        return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+    }
+
+    private <T> T inTransaction(SqlWork<T> work) {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            T result = session.doReturningWork(work::execute);
+
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error while maintaining user partitions");
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String queryString(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
+    private interface SqlWork<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,339 @@
+package ru.practice.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.dao.Deadline;
+import ru.practice.dao.DeadlineExceededException;
+import ru.practice.dao.OverloadException;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+import ru.practice.util.VirtualThreads;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON API over {@link UserService} on the JDK's built-in HTTP server:
+ * <pre>
+ * POST   /users                  create, body {"name": ..., "email": ..., "age": ...}
+ * GET    /users/{id}             read
+ * PUT    /users/{id}             update, body as for create
+ * DELETE /users/{id}             delete
+ * GET    /users?after=0&amp;limit=100 page ordered by id, "next" is the cursor of the following page
+ * GET    /users?ids=1,2,3        multi-get
+ * GET    /users/all              every user, streamed as a JSON array page by page
+ * </pre>
+ * A request may limit its own processing time with the {@code X-Request-Timeout-Ms} header; a request that
+ * runs out of time gets 504.
+ * Connections are kept alive between requests (HTTP/1.1 default of {@link HttpServer}); the process should
+ * set {@code sun.net.httpserver.nodelay}, as {@code App} does, or small responses wait for delayed ACKs.
+ * Handlers run on virtual threads when the runtime has them, otherwise on a fixed pool.
+ */
+public class UserHttpServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserHttpServer.class);
+
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 1000;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final long MAX_DRAIN_BYTES = 1024 * 1024;
+    private static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final UserService userService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public UserHttpServer(UserService userService, InetSocketAddress address) throws IOException {
+        this.userService = userService;
+        this.server = HttpServer.create(address, 0);
+        this.executor = VirtualThreads.newPerTaskExecutor()
+                .orElseGet(() -> Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4));
+
+        server.createContext("/users", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("HTTP API started on port {}, virtual threads: {}", getPort(), VirtualThreads.isSupported());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("HTTP API stopped");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            URI uri = exchange.getRequestURI();
+            String path = uri.getPath();
+            logger.debug("{} {}", method, uri);
+
+            try (Deadline.Scope ignored = requestDeadline(exchange)) {
+                if (path.equals("/users") || path.equals("/users/")) {
+                    switch (method) {
+                        case "GET" -> list(exchange, parseQuery(uri.getRawQuery()));
+                        case "POST" -> create(exchange);
+                        default -> sendError(exchange, 405, "Method not allowed");
+                    }
+                } else if (path.equals("/users/all") && method.equals("GET")) {
+                    streamAll(exchange);
+                } else {
+                    int id = parseId(path.substring("/users/".length()));
+                    switch (method) {
+                        case "GET" -> read(exchange, id);
+                        case "PUT" -> update(exchange, id);
+                        case "DELETE" -> delete(exchange, id);
+                        default -> sendError(exchange, 405, "Method not allowed");
+                    }
+                }
+            } catch (DeadlineExceededException e) {
+                sendError(exchange, 504, e.getMessage());
+            } catch (OverloadException e) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (NoSuchElementException e) {
+                sendError(exchange, 404, e.getMessage() == null ? "User not found" : e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error while handling {} {}", method, uri, e);
+                sendError(exchange, 500, "Internal error");
+            }
+        }
+    }
+
+    private static Deadline.Scope requestDeadline(HttpExchange exchange) {
+        String timeout = exchange.getRequestHeaders().getFirst(TIMEOUT_HEADER);
+        if (timeout == null) {
+            return null;
+        }
+        int millis = parseInt(timeout.trim(), TIMEOUT_HEADER);
+        if (millis <= 0) {
+            throw new IllegalArgumentException(TIMEOUT_HEADER + " should be positive");
+        }
+        return Deadline.after(Duration.ofMillis(millis)).enter();
+    }
+
+    private void create(HttpExchange exchange) throws IOException {
+        User user = UserJson.readUser(readBody(exchange));
+        sendUser(exchange, 201, userService.save(user));
+    }
+
+    private void read(HttpExchange exchange, int id) throws IOException {
+        drainBody(exchange);
+        Optional<User> user = userService.read(id);
+        if (user.isPresent()) {
+            sendUser(exchange, 200, user.get());
+        } else {
+            sendError(exchange, 404, "User not found");
+        }
+    }
+
+    private void update(HttpExchange exchange, int id) throws IOException {
+        User user = UserJson.readUser(readBody(exchange));
+        user.setId(id);
+        sendUser(exchange, 200, userService.update(user));
+    }
+
+    private void delete(HttpExchange exchange, int id) throws IOException {
+        drainBody(exchange);
+        userService.delete(id);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void list(HttpExchange exchange, Map<String, String> query) throws IOException {
+        drainBody(exchange);
+
+        String ids = query.get("ids");
+        if (ids != null) {
+            List<Integer> parsed = new ArrayList<>();
+            for (String id : ids.split(",")) {
+                if (!id.isBlank()) {
+                    parsed.add(parseId(id.trim()));
+                }
+            }
+            if (parsed.size() > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " ids are allowed");
+            }
+
+            StringBuilder body = new StringBuilder();
+            UserJson.writeUsers(body, userService.readByIds(parsed));
+            send(exchange, 200, body);
+            return;
+        }
+
+        int after = query.containsKey("after") ? parseInt(query.get("after"), "after") : 0;
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit"), "limit") : DEFAULT_PAGE_SIZE;
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit should be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<User> users = userService.readPage(after, limit);
+        StringBuilder body = new StringBuilder();
+        body.append("{\"users\":");
+        UserJson.writeUsers(body, users);
+        body.append(",\"next\":");
+        body.append(users.size() < limit ? "null" : Integer.toString(users.get(users.size() - 1).getId()));
+        body.append('}');
+        send(exchange, 200, body);
+    }
+
+    /**
+     * Writes the table as a chunked response, so neither side holds more than one page in memory.
+     * The first page is read before the status is sent, so an overloaded or slow database still gets its
+     * 503 or 504. A later failure can only cut the response short: the array is left unterminated.
+     */
+    private void streamAll(HttpExchange exchange) throws IOException {
+        drainBody(exchange);
+        List<User> page = userService.readPage(0, STREAM_PAGE_SIZE);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024)) {
+            out.write('[');
+            boolean first = true;
+            int after = 0;
+            while (true) {
+                for (User user : page) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    first = false;
+                    UserJson.writeUser(out, user);
+                }
+                if (page.size() < STREAM_PAGE_SIZE) {
+                    break;
+                }
+                after = page.get(page.size() - 1).getId();
+                page = userService.readPage(after, STREAM_PAGE_SIZE);
+            }
+            out.write(']');
+        }
+    }
+
+    private void sendUser(HttpExchange exchange, int status, User user) throws IOException {
+        StringBuilder body = new StringBuilder();
+        UserJson.writeUser(body, user);
+        send(exchange, status, body);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // The status is already on the wire, e.g. of a stream that failed halfway
+            logger.warn("Could not report {} after the response started: {}", status, message);
+            return;
+        }
+        StringBuilder body = new StringBuilder();
+        UserJson.writeError(body, message);
+        send(exchange, status, body);
+    }
+
+    private void send(HttpExchange exchange, int status, CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                // The rest has to be read for the connection to carry the next request; a client that keeps
+                // sending gets the connection closed after the error instead
+                if (!skip(in, MAX_DRAIN_BYTES)) {
+                    exchange.getResponseHeaders().set("Connection", "close");
+                }
+                throw new IllegalArgumentException("Request body is too large");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Unread request bytes would break the next request on a kept-alive connection.
+     */
+    private static void drainBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * @return false if the stream has more than {@code limit} bytes left
+     */
+    private static boolean skip(InputStream in, long limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        long skipped = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            skipped += read;
+            if (skipped > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                query.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static int parseId(String value) {
+        int id = parseInt(value, "id");
+        if (id <= 0) {
+            throw new IllegalArgumentException("Invalid user id");
+        }
+        return id;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+}
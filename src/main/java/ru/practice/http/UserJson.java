@@ -0,0 +1,262 @@
+package ru.practice.http;
+
+import ru.practice.models.User;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written JSON for the HTTP API. The payloads are small and flat, so reading and writing them
+ * directly avoids a JSON library and reflection on the hot path.
+ */
+public final class UserJson {
+
+    private UserJson() {
+    }
+
+    public static void writeUser(Appendable out, User user) throws IOException {
+        out.append("{\"id\":").append(Integer.toString(user.getId()))
+                .append(",\"name\":");
+        writeString(out, user.getName());
+        out.append(",\"email\":");
+        writeString(out, user.getEmail());
+        out.append(",\"age\":").append(Integer.toString(user.getAge()))
+                .append(",\"createdAt\":");
+        if (user.getCreatedAt() == null) {
+            out.append("null");
+        } else {
+            out.append('"').append(user.getCreatedAt().toString()).append('"');
+        }
+        out.append('}');
+    }
+
+    public static void writeUsers(Appendable out, List<User> users) throws IOException {
+        out.append('[');
+        for (int i = 0; i < users.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            writeUser(out, users.get(i));
+        }
+        out.append(']');
+    }
+
+    public static void writeError(Appendable out, String message) throws IOException {
+        out.append("{\"error\":");
+        writeString(out, message);
+        out.append('}');
+    }
+
+    public static void writeString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Reads {@code {"name": ..., "email": ..., "age": ...}}; unknown fields are ignored.
+     */
+    public static User readUser(String json) {
+        Map<String, Object> fields = new Parser(json).readObject();
+
+        User user = new User();
+        user.setName(stringField(fields, "name"));
+        user.setEmail(stringField(fields, "email"));
+        Object age = fields.get("age");
+        if (!(age instanceof Long)) {
+            throw new IllegalArgumentException("Field age should be an integer");
+        }
+        long value = (Long) age;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Field age is out of range");
+        }
+        user.setAge((int) value);
+        return user;
+    }
+
+    private static String stringField(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("Field " + name + " should be a string");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Parser for the flat objects the API accepts. Nested values are rejected.
+     */
+    private static class Parser {
+
+        private final String json;
+        private int position;
+
+        Parser(String json) {
+            this.json = json == null ? "" : json;
+        }
+
+        Map<String, Object> readObject() {
+            Map<String, Object> fields = new HashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+                return end(fields);
+            }
+
+            while (true) {
+                String name = readString();
+                expect(':');
+                fields.put(name, readValue());
+
+                char next = next();
+                if (next == '}') {
+                    return end(fields);
+                }
+                if (next != ',') {
+                    throw error("Expected , or }");
+                }
+            }
+        }
+
+        private <T> T end(T value) {
+            skipWhitespace();
+            if (position != json.length()) {
+                throw error("Unexpected trailing characters");
+            }
+            return value;
+        }
+
+        private Object readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return readNumber();
+            }
+            if (json.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            if (json.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (json.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            throw error("Unsupported value");
+        }
+
+        private Long readNumber() {
+            int start = position;
+            if (json.charAt(position) == '-') {
+                position++;
+            }
+            while (position < json.length() && Character.isDigit(json.charAt(position))) {
+                position++;
+            }
+            if (position < json.length() && ".eE".indexOf(json.charAt(position)) >= 0) {
+                throw error("Expected integer");
+            }
+            try {
+                return Long.parseLong(json.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> builder.append(escaped);
+                    case 'n' -> builder.append('\n');
+                    case 'r' -> builder.append('\r');
+                    case 't' -> builder.append('\t');
+                    case 'b' -> builder.append('\b');
+                    case 'f' -> builder.append('\f');
+                    case 'u' -> {
+                        if (position + 4 > json.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        try {
+                            builder.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        position += 4;
+                    }
+                    default -> throw error("Invalid escape");
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("Expected " + expected);
+            }
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private char peek() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw error("Unexpected end of JSON");
+            }
+            return json.charAt(position);
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at " + position + ": " + message);
+        }
+    }
+}
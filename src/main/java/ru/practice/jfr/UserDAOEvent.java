@@ -0,0 +1,101 @@
+package ru.practice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of one {@link ru.practice.dao.UserDAOImpl} call, so Hibernate and JDBC frames in a
+ * recording can be matched to the operation they belong to. The timings are taken only while the event is
+ * enabled; without a recording a call costs an allocation the JIT removes and a few enabled checks.
+ */
+@Name("ru.practice.UserDAO")
+@Label("User DAO Operation")
+@Category({"Users", "DAO"})
+@Description("Database operation of UserDAOImpl, from opening the session to closing it")
+@StackTrace(false)
+public class UserDAOEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("User Id")
+    @Description("Id of the user the operation is about, 0 for operations on many users")
+    int userId;
+
+    @Label("Rows")
+    @Description("Users read or written")
+    int rows;
+
+    @Label("Session Open Time")
+    @Timespan
+    long sessionOpenTime;
+
+    @Label("Commit Time")
+    @Timespan
+    long commitTime;
+
+    @Label("Failed")
+    boolean failed;
+
+    private transient long mark;
+
+    public static UserDAOEvent start(String operation, int userId) {
+        UserDAOEvent event = new UserDAOEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.userId = userId;
+            event.begin();
+            event.mark = System.nanoTime();
+        }
+        return event;
+    }
+
+    public void sessionOpened() {
+        if (isEnabled()) {
+            sessionOpenTime = System.nanoTime() - mark;
+        }
+    }
+
+    public void committing() {
+        if (isEnabled()) {
+            mark = System.nanoTime();
+        }
+    }
+
+    public void committed(int userId, int rows) {
+        if (isEnabled()) {
+            commitTime = System.nanoTime() - mark;
+            this.userId = userId;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * End of an operation without a transaction to commit; the commit time stays 0.
+     */
+    public void completed(int userId, int rows) {
+        if (isEnabled()) {
+            this.userId = userId;
+            this.rows = rows;
+        }
+    }
+
+    public void failed() {
+        failed = true;
+    }
+
+    /**
+     * Records the event unless it is disabled or shorter than the configured threshold.
+     */
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
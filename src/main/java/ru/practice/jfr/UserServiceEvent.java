@@ -0,0 +1,60 @@
+package ru.practice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of one {@link ru.practice.services.UserServiceImpl} call. The DAO events of the
+ * call are nested in it on the same thread.
+ */
+@Name("ru.practice.UserService")
+@Label("User Service Operation")
+@Category({"Users", "Service"})
+@Description("UserService operation including validation and every DAO call it makes")
+@StackTrace(false)
+public class UserServiceEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("User Id")
+    @Description("Id of the user the operation is about, 0 for operations on many users")
+    int userId;
+
+    @Label("Rows")
+    @Description("Users returned or written")
+    int rows;
+
+    @Label("Failed")
+    boolean failed;
+
+    public static UserServiceEvent start(String operation, int userId) {
+        UserServiceEvent event = new UserServiceEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.userId = userId;
+            event.begin();
+        }
+        return event;
+    }
+
+    public void completed(int userId, int rows) {
+        this.userId = userId;
+        this.rows = rows;
+    }
+
+    public void failed() {
+        failed = true;
+    }
+
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
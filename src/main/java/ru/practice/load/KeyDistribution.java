@@ -0,0 +1,82 @@
+package ru.practice.load;
+
+import java.util.Random;
+
+/**
+ * Chooses which of the preloaded users an operation touches.
+ */
+public abstract class KeyDistribution {
+
+    public static KeyDistribution of(String name, int keyCount) {
+        return switch (name) {
+            case "uniform" -> new Uniform(keyCount);
+            case "zipfian" -> new Zipfian(keyCount, Zipfian.DEFAULT_THETA);
+            default -> throw new IllegalArgumentException("Unknown key distribution: " + name);
+        };
+    }
+
+    /**
+     * Index in [0, keyCount).
+     */
+    public abstract int nextIndex(Random random);
+
+    private static class Uniform extends KeyDistribution {
+
+        private final int keyCount;
+
+        Uniform(int keyCount) {
+            this.keyCount = keyCount;
+        }
+
+        @Override
+        public int nextIndex(Random random) {
+            return random.nextInt(keyCount);
+        }
+    }
+
+    /**
+     * Zipfian generator from Gray et al. "Quickly Generating Billion-Record Synthetic Databases"
+     * (the one YCSB uses). Index 0 is the hottest key.
+     */
+    private static class Zipfian extends KeyDistribution {
+
+        static final double DEFAULT_THETA = 0.99;
+
+        private final int keyCount;
+        private final double theta;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(int keyCount, double theta) {
+            this.keyCount = keyCount;
+            this.theta = theta;
+            this.zetaN = zeta(keyCount, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1 - Math.pow(2.0 / keyCount, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        @Override
+        public int nextIndex(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return Math.min(1, keyCount - 1);
+            }
+            int index = (int) (keyCount * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(index, keyCount - 1);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package ru.practice.load;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.dao.AdmissionControlledUserDAO;
+import ru.practice.dao.ConcurrencyLimiter;
+import ru.practice.dao.Deadline;
+import ru.practice.dao.DeadlineExceededException;
+import ru.practice.dao.OverloadException;
+import ru.practice.dao.UserDAO;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.load.LoadTestConfig.Operation;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+import ru.practice.services.UserService;
+import ru.practice.services.UserServiceImpl;
+import ru.practice.util.LogSettings;
+import ru.practice.util.VirtualThreads;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-interactive load generator for {@link UserService}.
+ * <p>
+ * Every worker keeps its own histograms, so recording does not contend. With a target rate the latency is
+ * measured from the moment an operation was scheduled to start, so a stalled database shows up in the
+ * percentiles instead of silently lowering the request rate.
+ */
+public class LoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final int PRELOAD_BATCH = 500;
+
+    private final LoadTestConfig config;
+    private final UserService userService;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private int[] keyIds;
+    private KeyDistribution keyDistribution;
+    private final List<Integer> createdIds = new ArrayList<>();
+
+    public LoadTest(LoadTestConfig config, UserService userService) {
+        this.config = config;
+        this.userService = userService;
+    }
+
+    public static void main(String[] args) {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        LogSettings.quietApplicationLoggers(LoadTest.class);
+
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+        configuration.setProperty("hibernate.generate_statistics", "true");
+        configuration.setProperty("hibernate.show_sql", "false");
+        config.getHibernateProperties().forEach((key, value) -> configuration.setProperty((String) key, (String) value));
+
+        try (SessionFactory sessionFactory = configuration.buildSessionFactory()) {
+            UserDAO userDAO = new UserDAOImpl(sessionFactory);
+            AdmissionControlledUserDAO admission = null;
+            if (config.isAdmissionControlled()) {
+                admission = new AdmissionControlledUserDAO(userDAO,
+                        limiter(config, "reads", config.getReadLimit()),
+                        limiter(config, "writes", config.getWriteLimit()));
+                userDAO = admission;
+            }
+
+            LoadTest loadTest = new LoadTest(config, new UserServiceImpl(userDAO));
+            try {
+                loadTest.preload();
+
+                sessionFactory.getStatistics().clear();
+                Map<Operation, Result> results = loadTest.run();
+
+                loadTest.printReport(results, System.out);
+                if (admission != null) {
+                    System.out.println();
+                    System.out.println("Admission control:");
+                    System.out.println("  " + admission.getReadLimiter());
+                    System.out.println("  " + admission.getWriteLimiter());
+                }
+                printStatistics(sessionFactory.getStatistics(), System.out);
+            } finally {
+                loadTest.cleanUp();
+            }
+        }
+    }
+
+    private static ConcurrencyLimiter limiter(LoadTestConfig config, String name, int limit) {
+        if (config.getLatencyTarget() == null) {
+            return ConcurrencyLimiter.fixed(name, limit, config.getAdmissionQueue(), config.getAdmissionWait());
+        }
+        return ConcurrencyLimiter.adaptive(name, limit, 1, limit * 4,
+                config.getAdmissionQueue(), config.getAdmissionWait(), config.getLatencyTarget());
+    }
+
+    public void preload() {
+        logger.info("Preloading {} users", config.getKeys());
+
+        // Assigned before filling, so a preload that fails halfway still leaves its users to clean up.
+        // Saved in chunks like batch mode does, one saveAll per chunk instead of a transaction per user.
+        keyIds = new int[config.getKeys()];
+        for (int from = 0; from < keyIds.length; from += PRELOAD_BATCH) {
+            int to = Math.min(keyIds.length, from + PRELOAD_BATCH);
+            List<User> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(new User("user" + i, keyEmail(i), 20 + i % 60));
+            }
+            List<User> saved = userService.saveAll(batch);
+            for (int i = from; i < to; i++) {
+                keyIds[i] = saved.get(i - from).getId();
+            }
+        }
+        keyDistribution = KeyDistribution.of(config.getDistribution(), keyIds.length);
+    }
+
+    public Map<Operation, Result> run() {
+        if (keyIds == null) {
+            throw new IllegalStateException("Load test should be preloaded first");
+        }
+        logger.info("Running load test: {}", config);
+
+        ExecutorService executor = newExecutor();
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + config.getDuration().toNanos();
+
+        List<Worker> workers = new ArrayList<>(config.getThreads());
+        List<Future<Worker>> futures = new ArrayList<>(config.getThreads());
+        for (int i = 0; i < config.getThreads(); i++) {
+            Worker worker = new Worker(i, startNanos, endNanos);
+            workers.add(worker);
+            futures.add(executor.submit(worker, worker));
+        }
+
+        Map<Operation, Result> results = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            results.put(operation, new Result());
+        }
+        try {
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                for (Operation operation : Operation.values()) {
+                    results.get(operation).merge(worker.results[operation.ordinal()]);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Load test was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load test worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            collectCreatedIds(executor, workers);
+        }
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        results.values().forEach(result -> result.elapsedNanos = elapsedNanos);
+        return results;
+    }
+
+    /**
+     * Deletes the preloaded users and the users created during the run that were not deleted by it. Failures
+     * are logged and do not stop the clean-up; the users left behind all have {@code lt-<run id>-} emails.
+     */
+    public void cleanUp() {
+        List<Integer> ids = new ArrayList<>(createdIds);
+        if (keyIds != null) {
+            for (int id : keyIds) {
+                if (id != 0) {
+                    ids.add(id);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        logger.info("Deleting {} load test users", ids.size());
+
+        int failed = 0;
+        for (int id : ids) {
+            try {
+                userService.delete(id);
+            } catch (RuntimeException e) {
+                failed++;
+                logger.debug("Could not delete load test user {}: {}", id, e.getMessage());
+            }
+        }
+        if (failed > 0) {
+            logger.warn("Could not delete {} load test users, their emails start with lt-{}-", failed, runId);
+        }
+        keyIds = null;
+        keyDistribution = null;
+        createdIds.clear();
+    }
+
+    public void printReport(Map<Operation, Result> results, PrintStream out) {
+        out.println();
+        out.println("Load test: " + config);
+        out.printf("%-8s %10s %8s %8s %8s %8s %10s %9s %9s %9s %9s %9s %9s%n",
+                "op", "count", "errors", "timeouts", "rejected", "skipped", "ops/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        Result total = new Result();
+        for (Map.Entry<Operation, Result> entry : results.entrySet()) {
+            printRow(out, entry.getKey().name().toLowerCase(), entry.getValue());
+            total.merge(entry.getValue());
+            total.elapsedNanos = entry.getValue().elapsedNanos;
+        }
+        printRow(out, "total", total);
+    }
+
+    private static void printRow(PrintStream out, String name, Result result) {
+        LatencyHistogram histogram = result.histogram;
+        double seconds = result.elapsedNanos / 1e9;
+        out.printf("%-8s %10d %8d %8d %8d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                name,
+                histogram.getCount(),
+                result.errors,
+                result.timeouts,
+                result.rejected,
+                result.skipped,
+                seconds > 0 ? histogram.getCount() / seconds : 0,
+                histogram.getMeanNanos() / 1e6,
+                histogram.getPercentileNanos(50) / 1e6,
+                histogram.getPercentileNanos(90) / 1e6,
+                histogram.getPercentileNanos(99) / 1e6,
+                histogram.getPercentileNanos(99.9) / 1e6,
+                histogram.getMaxNanos() / 1e6);
+    }
+
+    private static void printStatistics(Statistics statistics, PrintStream out) {
+        out.println();
+        out.println("Hibernate statistics:");
+        out.printf("  sessions opened/closed     %d / %d%n", statistics.getSessionOpenCount(), statistics.getSessionCloseCount());
+        out.printf("  connections obtained       %d%n", statistics.getConnectCount());
+        out.printf("  transactions (successful)  %d (%d)%n", statistics.getTransactionCount(), statistics.getSuccessfulTransactionCount());
+        out.printf("  statements prepared        %d%n", statistics.getPrepareStatementCount());
+        out.printf("  queries executed           %d, slowest %d ms%n", statistics.getQueryExecutionCount(), statistics.getQueryExecutionMaxTime());
+        out.printf("  entities loaded            %d%n", statistics.getEntityLoadCount());
+        out.printf("  entities inserted          %d%n", statistics.getEntityInsertCount());
+        out.printf("  entities updated           %d%n", statistics.getEntityUpdateCount());
+        out.printf("  entities deleted           %d%n", statistics.getEntityDeleteCount());
+        out.printf("  optimistic failures        %d%n", statistics.getOptimisticFailureCount());
+    }
+
+    private void collectCreatedIds(ExecutorService executor, List<Worker> workers) {
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                // A worker still running owns its ids; reading them now would race with it
+                logger.warn("Load test workers did not stop, users they created are not deleted");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while stopping load test workers, users they created are not deleted");
+            return;
+        }
+        for (Worker worker : workers) {
+            createdIds.addAll(worker.createdIds);
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        if (config.isVirtualThreads()) {
+            Optional<ExecutorService> executor = VirtualThreads.newPerTaskExecutor();
+            if (executor.isPresent()) {
+                return executor.get();
+            }
+            logger.warn("Virtual threads are not supported by this runtime, using platform threads");
+        }
+        return Executors.newFixedThreadPool(config.getThreads());
+    }
+
+    private String keyEmail(int index) {
+        return "lt-" + runId + "-" + index + "@load.test";
+    }
+
+    public static class Result {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long errors;
+        private long timeouts;
+        private long rejected;
+        private long skipped;
+        private long elapsedNanos;
+
+        void merge(Result other) {
+            histogram.merge(other.histogram);
+            errors += other.errors;
+            timeouts += other.timeouts;
+            rejected += other.rejected;
+            skipped += other.skipped;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Operations that ran out of their deadline or query timeout; they are not counted as errors.
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Operations turned away by admission control; they are not counted as errors.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final int number;
+        private final long startNanos;
+        private final long endNanos;
+        private final Result[] results = new Result[Operation.values().length];
+        private final Deque<Integer> createdIds = new ArrayDeque<>();
+        private final Random random = new Random();
+        private long createdCount;
+
+        Worker(int number, long startNanos, long endNanos) {
+            this.number = number;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new Result();
+            }
+        }
+
+        @Override
+        public void run() {
+            long intervalNanos = config.getRate() > 0 ? (long) (config.getThreads() * 1e9 / config.getRate()) : 0;
+            // Spread the first operations of the workers over one interval instead of firing them together.
+            long nextStart = startNanos + (intervalNanos * number) / config.getThreads();
+            Duration timeout = config.getTimeout();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                long intendedStart;
+                if (intervalNanos > 0) {
+                    long now = System.nanoTime();
+                    if (nextStart - now > 0) {
+                        LockSupport.parkNanos(nextStart - now);
+                    }
+                    intendedStart = nextStart;
+                    nextStart += intervalNanos;
+                } else {
+                    intendedStart = System.nanoTime();
+                }
+                if (intendedStart - endNanos >= 0) {
+                    return;
+                }
+
+                Operation operation = config.nextOperation(random);
+                Result result = results[operation.ordinal()];
+                try (Deadline.Scope ignored = timeout != null ? Deadline.after(timeout).enter() : null) {
+                    if (!execute(operation)) {
+                        result.skipped++;
+                        continue;
+                    }
+                } catch (DeadlineExceededException e) {
+                    result.timeouts++;
+                } catch (OverloadException e) {
+                    result.rejected++;
+                } catch (Exception e) {
+                    result.errors++;
+                }
+                result.histogram.record(System.nanoTime() - intendedStart);
+            }
+        }
+
+        /**
+         * Returns false when the operation could not be attempted, e.g. a delete with nothing to delete.
+         */
+        private boolean execute(Operation operation) {
+            switch (operation) {
+                case READ -> userService.read(keyIds[keyDistribution.nextIndex(random)]);
+                case CREATE -> {
+                    String email = "lt-" + runId + "-w" + number + "-" + createdCount++ + "@load.test";
+                    createdIds.add(userService.save(new User("created", email, random.nextInt(100))).getId());
+                }
+                case UPDATE -> {
+                    int index = keyDistribution.nextIndex(random);
+                    userService.update(new User(keyIds[index], "user" + index, keyEmail(index), random.nextInt(100)));
+                }
+                case DELETE -> {
+                    // Deletes remove users created during the run, so the preloaded key set stays readable.
+                    Integer id = createdIds.pollFirst();
+                    if (id == null) {
+                        return false;
+                    }
+                    userService.delete(id);
+                }
+            }
+            return true;
+        }
+    }
+}
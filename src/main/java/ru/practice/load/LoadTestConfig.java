@@ -0,0 +1,239 @@
+package ru.practice.load;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Load test settings parsed from {@code key=value} arguments, for example
+ * <pre>
+ * loadtest threads=16 duration=60 rate=2000 mix=read:80,create:10,update:8,delete:2 distribution=zipfian db=h2
+ * </pre>
+ * {@code readLimit}, {@code writeLimit}, {@code queue}, {@code maxWaitMs} and {@code latencyTargetMs} put
+ * {@link ru.practice.dao.AdmissionControlledUserDAO} in front of the database, {@code timeoutMs} gives every
+ * operation a {@link ru.practice.dao.Deadline}.
+ * Arguments starting with {@code hibernate.} are passed to the Hibernate configuration as is.
+ */
+public class LoadTestConfig {
+
+    public enum Operation {
+        READ,
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private int threads = 8;
+    private boolean virtualThreads;
+    private double rate;
+    private Duration duration = Duration.ofSeconds(30);
+    private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private int[] cumulativeMix;
+    private String distribution = "uniform";
+    private int keys = 1000;
+    private int readLimit;
+    private int writeLimit;
+    private int admissionQueue = 100;
+    private Duration admissionWait = Duration.ofMillis(100);
+    private Duration latencyTarget;
+    private Duration timeout;
+    private final Properties hibernateProperties = new Properties();
+
+    public static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        config.mix.put(Operation.READ, 80);
+        config.mix.put(Operation.CREATE, 10);
+        config.mix.put(Operation.UPDATE, 8);
+        config.mix.put(Operation.DELETE, 2);
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+
+            if (key.startsWith("hibernate.")) {
+                config.hibernateProperties.setProperty(key, value);
+                continue;
+            }
+
+            switch (key) {
+                case "threads" -> config.threads = positive(key, Integer.parseInt(value));
+                case "virtual" -> config.virtualThreads = Boolean.parseBoolean(value);
+                case "rate" -> config.rate = Double.parseDouble(value);
+                case "duration" -> config.duration = Duration.ofSeconds(positive(key, Integer.parseInt(value)));
+                case "mix" -> config.parseMix(value);
+                case "distribution" -> config.distribution = value;
+                case "keys" -> config.keys = positive(key, Integer.parseInt(value));
+                case "db" -> config.useDatabase(value);
+                case "readLimit" -> config.readLimit = positive(key, Integer.parseInt(value));
+                case "writeLimit" -> config.writeLimit = positive(key, Integer.parseInt(value));
+                case "queue" -> config.admissionQueue = Integer.parseInt(value);
+                case "maxWaitMs" -> config.admissionWait = Duration.ofMillis(Long.parseLong(value));
+                case "timeoutMs" -> config.timeout = Duration.ofMillis(positive(key, Integer.parseInt(value)));
+                case "latencyTargetMs" -> config.latencyTarget = Duration.ofMillis(positive(key, Integer.parseInt(value)));
+                default -> throw new IllegalArgumentException("Unknown load test option: " + key);
+            }
+        }
+
+        KeyDistribution.of(config.distribution, 1);
+        config.buildCumulativeMix();
+        return config;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Target operations per second over all threads, 0 means as fast as possible.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    public String getDistribution() {
+        return distribution;
+    }
+
+    public int getKeys() {
+        return keys;
+    }
+
+    /**
+     * Admission control is switched on by {@code readLimit} and/or {@code writeLimit}.
+     */
+    public boolean isAdmissionControlled() {
+        return readLimit > 0 || writeLimit > 0;
+    }
+
+    /**
+     * Limit of concurrent reads; when only the write limit is set, reads are limited by the thread count.
+     */
+    public int getReadLimit() {
+        return readLimit > 0 ? readLimit : threads;
+    }
+
+    public int getWriteLimit() {
+        return writeLimit > 0 ? writeLimit : threads;
+    }
+
+    public int getAdmissionQueue() {
+        return admissionQueue;
+    }
+
+    public Duration getAdmissionWait() {
+        return admissionWait;
+    }
+
+    /**
+     * Latency threshold of adaptive limits, or null for fixed limits.
+     */
+    public Duration getLatencyTarget() {
+        return latencyTarget;
+    }
+
+    /**
+     * Deadline of every operation, or null to rely on the DAO's default query timeouts.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public Properties getHibernateProperties() {
+        return hibernateProperties;
+    }
+
+    public Operation nextOperation(Random random) {
+        int point = random.nextInt(cumulativeMix[cumulativeMix.length - 1]);
+        Operation[] operations = Operation.values();
+        for (int i = 0; i < cumulativeMix.length; i++) {
+            if (point < cumulativeMix[i]) {
+                return operations[i];
+            }
+        }
+        return Operation.READ;
+    }
+
+    @Override
+    public String toString() {
+        return "threads= " + threads +
+                ", virtual= " + virtualThreads +
+                ", rate= " + (rate > 0 ? rate + "/s" : "unlimited") +
+                ", duration= " + duration.getSeconds() + "s" +
+                ", mix= " + mix +
+                ", distribution= " + distribution +
+                ", keys= " + keys +
+                (timeout != null ? ", timeout= " + timeout.toMillis() + "ms" : "") +
+                (isAdmissionControlled()
+                        ? ", readLimit= " + getReadLimit() + ", writeLimit= " + getWriteLimit()
+                        + ", queue= " + admissionQueue + ", maxWait= " + admissionWait.toMillis() + "ms"
+                        + (latencyTarget != null ? ", latencyTarget= " + latencyTarget.toMillis() + "ms" : "")
+                        : "");
+    }
+
+    private void parseMix(String value) {
+        mix.clear();
+        for (String part : value.split(",")) {
+            String[] entry = part.split(":");
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in mix, got: " + part);
+            }
+            String name = entry[0].trim().toUpperCase();
+            Operation operation = name.equals("WRITE") ? Operation.CREATE : Operation.valueOf(name);
+            mix.put(operation, Integer.parseInt(entry[1].trim()));
+        }
+    }
+
+    private void buildCumulativeMix() {
+        Operation[] operations = Operation.values();
+        cumulativeMix = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            int weight = mix.getOrDefault(operations[i], 0);
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weight cant be negative");
+            }
+            total += weight;
+            cumulativeMix[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Mix should contain at least one operation");
+        }
+    }
+
+    private void useDatabase(String value) {
+        if (!value.equals("h2")) {
+            throw new IllegalArgumentException("Unknown db shortcut: " + value + " (use hibernate.connection.* instead)");
+        }
+
+        hibernateProperties.putIfAbsent("hibernate.connection.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        hibernateProperties.putIfAbsent("hibernate.connection.username", "sa");
+        hibernateProperties.putIfAbsent("hibernate.connection.password", "");
+        hibernateProperties.putIfAbsent("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        hibernateProperties.putIfAbsent("hibernate.hbm2ddl.auto", "create-drop");
+    }
+
+    private static int positive(String key, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(key + " should be positive");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,45 @@
+package ru.practice.models;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "user_email_routes")
+public class EmailRoute {
+
+    @Id
+    @Column(name = "email", length = 256)
+    private String email;
+
+    @Column(name = "shard", nullable = false)
+    private int shard;
+
+    public EmailRoute() {
+    }
+
+    public EmailRoute(String email, int shard) {
+        this.email = email;
+        this.shard = shard;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    @Override
+    public String toString() {
+        return "email= '" + email + '\'' +
+                ", shard= " + shard;
+    }
+}
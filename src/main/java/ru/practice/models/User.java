@@ -5,7 +5,7 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "users_created_at_idx", columnList = "created_at"))
 public class User {
 
     @Id
@@ -26,10 +26,9 @@ public class User {
     @Temporal(TemporalType.TIMESTAMP)
     private LocalDateTime createdAt;
 
-    {
-        createdAt = LocalDateTime.now();
-    }
-
+    /**
+     * Used by Hibernate when loading, so it does not stamp a creation time that is overwritten right away.
+     */
     public User() {
     }
 
@@ -37,6 +36,7 @@ public class User {
         this.name = name;
         this.email = email;
         this.age = age;
+        this.createdAt = LocalDateTime.now();
     }
 
     public User(int id, String name, String email, int age) {
@@ -44,6 +44,14 @@ public class User {
         this.name = name;
         this.email = email;
         this.age = age;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PrePersist
+    void stampCreatedAt() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
     }
 
     public String getName() {
@@ -0,0 +1,24 @@
+package ru.practice.services;
+
+import java.util.Locale;
+
+/**
+ * Canonical form of email addresses. Emails are stored normalized, so the unique index on
+ * {@code users.email} is an index on the normalized value: case variants of one address are duplicates,
+ * and a lookup by any variant is an equality lookup on that index instead of a {@code lower(email)} scan.
+ */
+public final class Emails {
+
+    private Emails() {
+    }
+
+    /**
+     * Trims the address and lower-cases it with {@link Locale#ROOT}, so the result does not depend on the
+     * default locale (e.g. the Turkish dotless i). Returns null for null. This is the only place emails are
+     * normalized: {@code EmailNormalization} rewrites legacy rows with it rather than with the database's
+     * {@code lower(trim(...))}, which can lower non-ASCII letters differently.
+     */
+    public static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
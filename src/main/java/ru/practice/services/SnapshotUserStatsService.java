@@ -0,0 +1,31 @@
+package ru.practice.services;
+
+import ru.practice.snapshot.UserSnapshot;
+
+import java.time.LocalDate;
+import java.util.SortedMap;
+
+/**
+ * {@link UserStatsService} served from a {@link UserSnapshot}, which is kept up to date from the change feed.
+ * Nothing reaches the database per call; numbers lag the table by the snapshot's refresh period.
+ */
+public class SnapshotUserStatsService implements UserStatsService {
+
+    private final UserSnapshot snapshot;
+
+    public SnapshotUserStatsService(UserSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public long countUsers() {
+        return snapshot.size();
+    }
+
+    public long[] ageHistogram(int bucketWidth) {
+        return snapshot.ageHistogram(bucketWidth);
+    }
+
+    public SortedMap<LocalDate, Long> signUpsPerDay(LocalDate from, LocalDate to) {
+        return snapshot.signUpsPerDay(from, to);
+    }
+}
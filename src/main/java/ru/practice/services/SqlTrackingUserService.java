@@ -0,0 +1,111 @@
+package ru.practice.services;
+
+import ru.practice.models.User;
+import ru.practice.sql.SqlCallTracker;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * {@link UserService} decorator that counts the SQL statements of every call with {@link SqlCallTracker}
+ * and logs calls that go over their statement budget.
+ */
+public class SqlTrackingUserService implements UserService {
+
+    /**
+     * Statements each operation may run, whatever the size of its input:
+     * {@code save} — email check, user insert, change log insert;
+     * {@code saveAll} — one email check and one insert of all users with their change log rows;
+     * {@code update} — email check, load, update, change log insert;
+     * {@code delete} — existence check, then load, delete, change log insert for an existing user.
+     * Statements that set PostgreSQL timeouts under a {@code Deadline} are setup statements and not counted.
+     */
+    private static final Map<String, Integer> DEFAULT_BUDGETS = Map.of(
+            "save", 3,
+            "saveAll", 2,
+            "read", 1,
+            "readByEmail", 1,
+            "readAll", 1,
+            "readPage", 1,
+            "readByIds", 1,
+            "update", 4,
+            "delete", 4);
+
+    private final UserService userService;
+    private final Map<String, Integer> budgets;
+    private final int saveAllBudgetPerUser;
+
+    public SqlTrackingUserService(UserService userService) {
+        this(userService, Map.of(), 0);
+    }
+
+    /**
+     * @param budgets statement budgets by operation name, replacing the defaults they mention
+     * @param saveAllBudgetPerUser statements {@code saveAll} may run per user on top of its budget, for DAOs that
+     *                             cannot insert a batch with one statement
+     */
+    public SqlTrackingUserService(UserService userService, Map<String, Integer> budgets, int saveAllBudgetPerUser) {
+        this.userService = userService;
+        this.budgets = new HashMap<>(DEFAULT_BUDGETS);
+        this.budgets.putAll(budgets);
+        this.saveAllBudgetPerUser = saveAllBudgetPerUser;
+    }
+
+    /**
+     * Budgets for {@link ru.practice.dao.UserDAOImpl}: on databases other than PostgreSQL it persists every user
+     * and their change log row one by one, so {@code saveAll} gets the email check plus two statements per user.
+     */
+    public static SqlTrackingUserService forUserDAOImpl(UserService userService, boolean postgreSQL) {
+        return postgreSQL
+                ? new SqlTrackingUserService(userService)
+                : new SqlTrackingUserService(userService, Map.of("saveAll", 1), 2);
+    }
+
+    public User save(User user) {
+        return track("save", () -> userService.save(user));
+    }
+
+    public List<User> saveAll(List<User> users) {
+        int budget = budgets.get("saveAll") + (users == null ? 0 : saveAllBudgetPerUser * users.size());
+        return SqlCallTracker.track("saveAll", budget, () -> userService.saveAll(users));
+    }
+
+    public Optional<User> read(int id) {
+        return track("read", () -> userService.read(id));
+    }
+
+    public Optional<User> readByEmail(String email) {
+        return track("readByEmail", () -> userService.readByEmail(email));
+    }
+
+    public List<User> readAll() {
+        return track("readAll", userService::readAll);
+    }
+
+    public List<User> readPage(int afterId, int limit) {
+        return track("readPage", () -> userService.readPage(afterId, limit));
+    }
+
+    public List<User> readByIds(Collection<Integer> ids) {
+        return track("readByIds", () -> userService.readByIds(ids));
+    }
+
+    public User update(User user) {
+        return track("update", () -> userService.update(user));
+    }
+
+    public void delete(int id) {
+        track("delete", () -> {
+            userService.delete(id);
+            return null;
+        });
+    }
+
+    private <T> T track(String operation, Supplier<T> call) {
+        return SqlCallTracker.track(operation, budgets.get(operation), call);
+    }
+}
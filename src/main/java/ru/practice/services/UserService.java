@@ -2,6 +2,7 @@ package ru.practice.services;
 
 import ru.practice.models.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,10 +10,18 @@ public interface UserService {
 
     User save(User user);
 
+    List<User> saveAll(List<User> users);
+
     Optional<User> read(int id);
 
+    Optional<User> readByEmail(String email);
+
     List<User> readAll();
 
+    List<User> readPage(int afterId, int limit);
+
+    List<User> readByIds(Collection<Integer> ids);
+
     User update(User user);
 
     void delete(int id);
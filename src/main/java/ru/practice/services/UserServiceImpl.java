@@ -2,12 +2,18 @@ package ru.practice.services;
 
 import org.slf4j.LoggerFactory;
 import ru.practice.dao.UserDAO;
-import ru.practice.dao.UserDAOImpl;
+import ru.practice.jfr.UserServiceEvent;
 import ru.practice.models.User;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import org.slf4j.Logger;
 
@@ -16,87 +22,264 @@ public class UserServiceImpl implements UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
 
     private final UserDAO userDAO;
+    private final UserValidator validator = UserValidator.standard();
 
-    public UserServiceImpl(UserDAOImpl userDAOImpl) {
-        this.userDAO = userDAOImpl;
+    public UserServiceImpl(UserDAO userDAO) {
+        this.userDAO = userDAO;
     }
 
     public User save(User user) {
-        if (!isUserValid(user)) {
-            logger.info("User was not created");
-            throw new IllegalArgumentException("User is invalid");
+        UserServiceEvent event = UserServiceEvent.start("save", 0);
+        try {
+            User normalized = normalized(user);
+            int violations = validate(normalized);
+            if (violations != 0) {
+                throw invalid("save", violations);
+            }
+
+            User savedUser = userDAO.save(normalized);
+            logger.info("User was created");
+            event.completed(savedUser.getId(), 1);
+            return savedUser;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
         }
+    }
 
-        User savedUser = userDAO.save(user);
-        logger.info("User was created");
-        return savedUser;
+    public List<User> saveAll(List<User> users) {
+        UserServiceEvent event = UserServiceEvent.start("saveAll", 0);
+        try {
+            if (users == null) {
+                throw new IllegalArgumentException("Users cant be null");
+            }
+            List<User> normalized = new ArrayList<>(users.size());
+            for (User user : users) {
+                normalized.add(normalized(user));
+            }
+            int[] violations = new int[normalized.size()];
+            int all = validator.validateAll(normalized, violations) | emailsTaken(normalized, violations);
+            if (all != 0) {
+                throw invalidBatch(violations, normalized.size());
+            }
+
+            List<User> savedUsers = userDAO.saveAll(normalized);
+            logger.info("{} users were created", savedUsers.size());
+            event.completed(0, savedUsers.size());
+            return savedUsers;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
+        }
     }
 
     public Optional<User> read(int id) {
-        return userDAO.readById(id);
+        UserServiceEvent event = UserServiceEvent.start("read", id);
+        try {
+            Optional<User> user = userDAO.readById(id);
+            event.completed(id, user.isPresent() ? 1 : 0);
+            return user;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
+        }
+    }
+
+    public Optional<User> readByEmail(String email) {
+        UserServiceEvent event = UserServiceEvent.start("readByEmail", 0);
+        try {
+            Optional<User> user = userDAO.readByEmail(Emails.normalize(email));
+            event.completed(user.map(User::getId).orElse(0), user.isPresent() ? 1 : 0);
+            return user;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
+        }
     }
 
     public List<User> readAll() {
-        return userDAO.readAll();
+        UserServiceEvent event = UserServiceEvent.start("readAll", 0);
+        try {
+            List<User> users = userDAO.readAll();
+            event.completed(0, users.size());
+            return users;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
+        }
     }
 
-    public User update(User user) {
-        if (userDAO.readById(user.getId()).isEmpty()) {
-            logger.info("User not exist");
-            throw new NoSuchElementException("User not exist");
+    public List<User> readPage(int afterId, int limit) {
+        UserServiceEvent event = UserServiceEvent.start("readPage", 0);
+        try {
+            List<User> users = userDAO.readPage(afterId, limit);
+            event.completed(0, users.size());
+            return users;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
         }
+    }
+
+    public List<User> readByIds(Collection<Integer> ids) {
+        UserServiceEvent event = UserServiceEvent.start("readByIds", 0);
+        try {
+            List<User> users = userDAO.readByIds(ids);
+            event.completed(0, users.size());
+            return users;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
+        }
+    }
 
-        isUserValid(user);
+    public User update(User user) {
+        UserServiceEvent event = UserServiceEvent.start("update", user.getId());
+        try {
+            User normalized = normalized(user);
+            int violations = validate(normalized);
+            if (violations != 0) {
+                throw invalid("update", violations);
+            }
 
-        return userDAO.update(user);
+            // The DAO loads the user in its transaction anyway and throws NoSuchElementException when it is gone
+            User updatedUser = userDAO.update(normalized);
+            event.completed(user.getId(), 1);
+            return updatedUser;
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
+        }
     }
 
     public void delete(int id) {
-        Optional<User> user = userDAO.readById(id);
+        UserServiceEvent event = UserServiceEvent.start("delete", id);
+        try {
+            Optional<User> user = userDAO.readById(id);
 
-        if (user.isEmpty()) {
-            logger.info("User not found");
-            return;
+            if (user.isEmpty()) {
+                logger.info("User not found");
+                return;
+            }
+
+            userDAO.delete(id);
+            event.completed(id, 1);
+        } catch (RuntimeException e) {
+            event.failed();
+            throw e;
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * The user with its email in the {@link Emails#normalize} form: the user itself when it already is,
+     * otherwise a copy, so the caller's object is left as it was.
+     */
+    private static User normalized(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cant be null");
+        }
+        String email = Emails.normalize(user.getEmail());
+        if (Objects.equals(email, user.getEmail())) {
+            return user;
         }
 
-        userDAO.delete(id);
+        User copy = new User(user.getId(), user.getName(), email, user.getAge());
+        copy.setCreatedAt(user.getCreatedAt());
+        return copy;
     }
 
-    private boolean isUserValid(User user) {
-        boolean isValid = true;
-        StringBuilder builder = new StringBuilder();
+    /**
+     * Checks the fields and whether another user already has the email.
+     *
+     * @return the {@link UserValidator} bits of the violated rules, 0 for a valid user
+     */
+    private int validate(User user) {
+        return validator.validate(user) | emailTaken(user);
+    }
 
-        int nameLength = user.getName().length();
-        if (nameLength > 256 || nameLength == 0) {
-            logger.warn("Name length should be between 1 and 256 characters");
-            builder.append("Name length should be between 1 and 256 characters. ");
-            isValid = false;
+    private int emailTaken(User user) {
+        if (user.getEmail() == null) {
+            return 0;
         }
+        Optional<User> owner = userDAO.readByEmail(user.getEmail());
+        return owner.isPresent() && owner.get().getId() != user.getId() ? UserValidator.EMAIL_TAKEN : 0;
+    }
 
-        int emailLength = user.getEmail().length();
-        if (emailLength > 256 || emailLength == 0) {
-            logger.warn("Email length should be between 1 and 256 characters");
-            builder.append("Email length should be between 1 and 256 characters. ");
-            isValid = false;
+    /**
+     * Looks the emails of the whole batch up with one query and marks {@link UserValidator#EMAIL_TAKEN}
+     * in {@code violations} for users whose email belongs to another user.
+     *
+     * @return {@link UserValidator#EMAIL_TAKEN} if any user was marked, 0 otherwise
+     */
+    private int emailsTaken(List<User> users, int[] violations) {
+        Set<String> emails = new HashSet<>(users.size() * 2);
+        for (User user : users) {
+            if (user.getEmail() != null) {
+                emails.add(user.getEmail());
+            }
+        }
+        if (emails.isEmpty()) {
+            return 0;
         }
 
-        Optional<User> userCheck = userDAO.readByEmail(user.getEmail());
-        if ((userCheck.isPresent()) && (userCheck.get().getId() != user.getId())) {
-            logger.warn("This email is already taken");
-            builder.append("This email is already taken. ");
-            isValid = false;
+        Map<String, Integer> owners = new HashMap<>(emails.size() * 2);
+        for (User owner : userDAO.readByEmails(emails)) {
+            owners.put(owner.getEmail(), owner.getId());
         }
 
-        int userAge = user.getAge();
-        if (userAge < 0 || userAge > 120) {
-            logger.warn("Age should be in range of 0 and 120 years");
-            builder.append("Age should be in range of 0 and 120 years. ");
-            isValid = false;
+        int taken = 0;
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            Integer owner = user.getEmail() == null ? null : owners.get(user.getEmail());
+            if (owner != null && owner != user.getId()) {
+                violations[i] |= UserValidator.EMAIL_TAKEN;
+                taken = UserValidator.EMAIL_TAKEN;
+            }
         }
-        if (!isValid) {
-            throw new IllegalArgumentException(builder.toString());
-        } else {
-            return true;
+        return taken;
+    }
+
+    /**
+     * Names the first invalid user of a batch, the rest are only counted.
+     */
+    private static IllegalArgumentException invalidBatch(int[] violations, int size) {
+        int first = -1;
+        int invalid = 0;
+        for (int i = 0; i < size; i++) {
+            if (violations[i] != 0) {
+                invalid++;
+                if (first < 0) {
+                    first = i;
+                }
+            }
         }
+        String message = invalid + " of " + size + " users are invalid, user " + (first + 1) + ": "
+                + UserValidator.describe(violations[first]);
+        logger.warn("saveAll rejected: {}", message);
+        return new IllegalArgumentException(message);
+    }
+
+    private static IllegalArgumentException invalid(String operation, int violations) {
+        String message = UserValidator.describe(violations);
+        logger.warn("{} rejected: {}", operation, message);
+        return new IllegalArgumentException(message);
     }
 }
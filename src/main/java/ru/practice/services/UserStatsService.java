@@ -0,0 +1,23 @@
+package ru.practice.services;
+
+import java.time.LocalDate;
+import java.util.SortedMap;
+
+/**
+ * Aggregate numbers about users for dashboards, computed without transferring the table.
+ */
+public interface UserStatsService {
+
+    long countUsers();
+
+    /**
+     * Number of users per age bucket: element {@code i} counts ages from {@code i * bucketWidth} to
+     * {@code (i + 1) * bucketWidth - 1}, the last bucket holds the oldest user.
+     */
+    long[] ageHistogram(int bucketWidth);
+
+    /**
+     * Number of users created per day from {@code from} to {@code to} inclusive; days without sign-ups are left out.
+     */
+    SortedMap<LocalDate, Long> signUpsPerDay(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,175 @@
+package ru.practice.services;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * {@link UserStatsService} running grouped aggregate queries, so only counts leave the database.
+ * Results are cached for a short time; concurrent callers of an expired result wait for one query
+ * instead of each running their own. Expired results are evicted when a new one is cached.
+ */
+public class UserStatsServiceImpl implements UserStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatsServiceImpl.class);
+
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(10);
+
+    private final SessionFactory sessionFactory;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<List<Object>, Cached> cache = new ConcurrentHashMap<>();
+
+    public UserStatsServiceImpl(SessionFactory sessionFactory) {
+        this(sessionFactory, DEFAULT_TTL);
+    }
+
+    public UserStatsServiceImpl(SessionFactory sessionFactory, Duration ttl) {
+        this.sessionFactory = sessionFactory;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public long countUsers() {
+        return cached(List.of("count"), session ->
+                session.createSelectionQuery("select count(u) from User u", Long.class).getSingleResult());
+    }
+
+    public long[] ageHistogram(int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("Bucket width should be positive");
+        }
+
+        long[] histogram = cached(List.of("ages", bucketWidth), session -> {
+            // One row per distinct age, at most a hundred or so, bucketed here
+            List<Object[]> rows = session.createSelectionQuery(
+                    "select u.age, count(u) from User u group by u.age order by u.age", Object[].class)
+                    .getResultList();
+
+            int maxAge = rows.isEmpty() ? 0 : Math.max(0, (Integer) rows.get(rows.size() - 1)[0]);
+            long[] buckets = new long[maxAge / bucketWidth + 1];
+            for (Object[] row : rows) {
+                buckets[Math.max(0, (Integer) row[0]) / bucketWidth] += (Long) row[1];
+            }
+            return buckets;
+        });
+        return histogram.clone();
+    }
+
+    public SortedMap<LocalDate, Long> signUpsPerDay(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new NullPointerException("Dates cant be null");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Date range is empty");
+        }
+
+        return cached(List.of("days", from, to), session -> {
+            List<Object[]> rows = session.createSelectionQuery(
+                    "select cast(u.createdAt as LocalDate), count(u) from User u "
+                            + "where u.createdAt >= :from and u.createdAt < :to "
+                            + "group by cast(u.createdAt as LocalDate) order by 1", Object[].class)
+                    .setParameter("from", from.atStartOfDay())
+                    .setParameter("to", to.plusDays(1).atStartOfDay())
+                    .getResultList();
+
+            SortedMap<LocalDate, Long> days = new TreeMap<>();
+            for (Object[] row : rows) {
+                days.put((LocalDate) row[0], (Long) row[1]);
+            }
+            return Collections.unmodifiableSortedMap(days);
+        });
+    }
+
+    /**
+     * Drops cached results, e.g. after a bulk import.
+     */
+    public void invalidate() {
+        cache.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(List<Object> key, Function<Session, T> query) {
+        long now = System.nanoTime();
+        Cached entry = cache.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            Cached fresh = new Cached(now + ttlNanos);
+            entry = cache.compute(key, (k, old) -> old == null || old.isExpired(now) ? fresh : old);
+            if (entry == fresh) {
+                evictExpired(now);
+                try {
+                    fresh.value.complete(read(query));
+                } catch (RuntimeException e) {
+                    cache.remove(key, fresh);
+                    fresh.value.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            return (T) entry.value.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Keys like the date range of {@link #signUpsPerDay} slide with every caller, so expired results are
+     * dropped whenever a new one is added; the map holds only what was queried within the last TTL.
+     */
+    private void evictExpired(long now) {
+        cache.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    private <T> T read(Function<Session, T> query) {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            session.setDefaultReadOnly(true);
+            transaction = session.beginTransaction();
+
+            T result = query.apply(session);
+
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error while reading user statistics from database");
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static class Cached {
+
+        final CompletableFuture<Object> value = new CompletableFuture<>();
+        final long expiresAtNanos;
+
+        Cached(long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
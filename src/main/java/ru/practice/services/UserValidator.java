@@ -0,0 +1,129 @@
+package ru.practice.services;
+
+import ru.practice.models.User;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks the fields of a user against rules fixed at construction and reports the violated ones as a bitmask,
+ * 0 when the user is valid. Checking allocates nothing; messages are built by {@link #describe} only for a
+ * user that failed.
+ * <p>
+ * The validator does not touch the database: {@link #EMAIL_TAKEN} is set by the caller that looked the
+ * email up, and emails are expected to be normalized with {@link Emails#normalize} beforehand.
+ */
+public class UserValidator {
+
+    public static final int NAME_LENGTH = 1;
+    public static final int EMAIL_LENGTH = 1 << 1;
+    public static final int AGE_RANGE = 1 << 2;
+    public static final int EMAIL_TAKEN = 1 << 3;
+    public static final int EMAIL_DUPLICATE = 1 << 4;
+
+    public static final int MAX_NAME_LENGTH = 256;
+    public static final int MAX_EMAIL_LENGTH = 256;
+    public static final int MIN_AGE = 0;
+    public static final int MAX_AGE = 120;
+
+    private static final String[] MESSAGES = {
+            "Name length should be between 1 and " + MAX_NAME_LENGTH + " characters",
+            "Email length should be between 1 and " + MAX_EMAIL_LENGTH + " characters",
+            "Age should be in range of " + MIN_AGE + " and " + MAX_AGE + " years",
+            "This email is already taken",
+            "This email occurs more than once in the batch"
+    };
+
+    private static final UserValidator STANDARD =
+            new UserValidator(MAX_NAME_LENGTH, MAX_EMAIL_LENGTH, MIN_AGE, MAX_AGE);
+
+    private final int maxNameLength;
+    private final int maxEmailLength;
+    private final int minAge;
+    private final int maxAge;
+
+    private UserValidator(int maxNameLength, int maxEmailLength, int minAge, int maxAge) {
+        this.maxNameLength = maxNameLength;
+        this.maxEmailLength = maxEmailLength;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * The rules {@link UserServiceImpl} enforces on every write. The instance is immutable and shared.
+     */
+    public static UserValidator standard() {
+        return STANDARD;
+    }
+
+    /**
+     * @return the bits of the violated rules, 0 for a valid user
+     */
+    public int validate(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cant be null");
+        }
+
+        int violations = 0;
+        if (!hasLength(user.getName(), maxNameLength)) {
+            violations |= NAME_LENGTH;
+        }
+        if (!hasLength(user.getEmail(), maxEmailLength)) {
+            violations |= EMAIL_LENGTH;
+        }
+        if (user.getAge() < minAge || user.getAge() > maxAge) {
+            violations |= AGE_RANGE;
+        }
+        return violations;
+    }
+
+    /**
+     * Validates a batch at once: writes the violations of {@code users.get(i)} to {@code violations[i]} and
+     * also marks users whose email repeats an earlier one in the batch with {@link #EMAIL_DUPLICATE}, since
+     * such a batch would fail on the unique index anyway.
+     *
+     * @return the union of all violations, 0 when every user is valid
+     */
+    public int validateAll(List<User> users, int[] violations) {
+        if (users == null) {
+            throw new IllegalArgumentException("Users cant be null");
+        }
+        if (violations.length < users.size()) {
+            throw new IllegalArgumentException("Violations array is shorter than the batch");
+        }
+
+        int all = 0;
+        Set<String> emails = new HashSet<>(users.size() * 2);
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            int userViolations = validate(user);
+            if (user.getEmail() != null && !emails.add(user.getEmail())) {
+                userViolations |= EMAIL_DUPLICATE;
+            }
+            violations[i] = userViolations;
+            all |= userViolations;
+        }
+        return all;
+    }
+
+    /**
+     * Human-readable list of the violated rules, e.g. {@code "Age should be in range of 0 and 120 years."}.
+     */
+    public static String describe(int violations) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < MESSAGES.length; i++) {
+            if ((violations & (1 << i)) != 0) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(MESSAGES[i]).append('.');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean hasLength(String value, int maxLength) {
+        return value != null && !value.isEmpty() && value.length() <= maxLength;
+    }
+}
@@ -0,0 +1,223 @@
+package ru.practice.snapshot;
+
+import ru.practice.models.User;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable column arrays of a {@link UserSnapshot}, one row per user in ascending id order.
+ * <p>
+ * Names are dictionary-encoded: {@code names} holds every distinct name once, sorted, and {@code nameCodes}
+ * points into it, so a name prefix is a contiguous range of codes. Emails are unique, so they are stored as
+ * UTF-8 bytes back to back with an offsets column. Creation times are kept as epoch milliseconds of the
+ * local date-time read as UTC.
+ */
+final class UserColumns {
+
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    final int size;
+    final int[] ids;
+    final int[] ages;
+    final long[] createdAt;
+    final int[] nameCodes;
+    final String[] names;
+    final byte[] emails;
+    final int[] emailOffsets;
+
+    private UserColumns(int size, int[] ids, int[] ages, long[] createdAt, int[] nameCodes, String[] names,
+                        byte[] emails, int[] emailOffsets) {
+        this.size = size;
+        this.ids = ids;
+        this.ages = ages;
+        this.createdAt = createdAt;
+        this.nameCodes = nameCodes;
+        this.names = names;
+        this.emails = emails;
+        this.emailOffsets = emailOffsets;
+    }
+
+    int rowOf(int id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    String name(int row) {
+        return names[nameCodes[row]];
+    }
+
+    String email(int row) {
+        return new String(emails, emailOffsets[row], emailOffsets[row + 1] - emailOffsets[row], StandardCharsets.UTF_8);
+    }
+
+    LocalDateTime createdAt(int row) {
+        return fromMillis(createdAt[row]);
+    }
+
+    User toUser(int row) {
+        User user = new User();
+        user.setId(ids[row]);
+        user.setName(name(row));
+        user.setEmail(email(row));
+        user.setAge(ages[row]);
+        user.setCreatedAt(createdAt(row));
+        return user;
+    }
+
+    /**
+     * First code of names starting with the prefix and the code after the last one.
+     */
+    int[] nameCodeRange(String prefix) {
+        int from = Arrays.binarySearch(names, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = from;
+        while (to < names.length && names[to].startsWith(prefix)) {
+            to++;
+        }
+        return new int[]{from, to};
+    }
+
+    /**
+     * Copies this snapshot with the given rows replaced or added and the given ids removed.
+     *
+     * @param changed rows read after the change, in ascending id order
+     * @param removed ids of deleted users
+     */
+    UserColumns apply(UserColumns changed, int[] removed) {
+        Builder builder = new Builder(size + changed.size);
+        int row = 0;
+        int changedRow = 0;
+        while (row < size || changedRow < changed.size) {
+            if (changedRow == changed.size || (row < size && ids[row] < changed.ids[changedRow])) {
+                if (Arrays.binarySearch(removed, ids[row]) < 0) {
+                    builder.addRow(this, row);
+                }
+                row++;
+            } else {
+                if (row < size && ids[row] == changed.ids[changedRow]) {
+                    row++;
+                }
+                builder.addRow(changed, changedRow++);
+            }
+        }
+        return builder.build();
+    }
+
+    long estimatedBytes() {
+        long bytes = 4L * ids.length + 4L * ages.length + 8L * createdAt.length + 4L * nameCodes.length
+                + emails.length + 4L * emailOffsets.length;
+        for (String name : names) {
+            bytes += 40 + name.length();
+        }
+        return bytes;
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time == null ? NO_TIME : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromMillis(long millis) {
+        if (millis == NO_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Collects rows in ascending id order into growing arrays.
+     */
+    static final class Builder {
+
+        private int size;
+        private int[] ids;
+        private int[] ages;
+        private long[] createdAt;
+        private int[] nameCodes;
+        private final Map<String, Integer> nameCodesByName = new HashMap<>();
+        private byte[] emails;
+        private int[] emailOffsets;
+        private int emailsLength;
+
+        Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            ids = new int[capacity];
+            ages = new int[capacity];
+            createdAt = new long[capacity];
+            nameCodes = new int[capacity];
+            emails = new byte[capacity * 16];
+            emailOffsets = new int[capacity + 1];
+        }
+
+        void add(int id, String name, String email, int age, LocalDateTime created) {
+            byte[] emailBytes = email.getBytes(StandardCharsets.UTF_8);
+            add(id, name, emailBytes, 0, emailBytes.length, age, toMillis(created));
+        }
+
+        void addRow(UserColumns from, int row) {
+            int offset = from.emailOffsets[row];
+            add(from.ids[row], from.name(row), from.emails, offset, from.emailOffsets[row + 1] - offset,
+                    from.ages[row], from.createdAt[row]);
+        }
+
+        private void add(int id, String name, byte[] email, int emailOffset, int emailLength, int age, long created) {
+            if (size > 0 && ids[size - 1] >= id) {
+                throw new IllegalArgumentException("Rows should be added in ascending id order");
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                createdAt = Arrays.copyOf(createdAt, capacity);
+                nameCodes = Arrays.copyOf(nameCodes, capacity);
+                emailOffsets = Arrays.copyOf(emailOffsets, capacity + 1);
+            }
+            if (emailsLength + emailLength > emails.length) {
+                emails = Arrays.copyOf(emails, Math.max(emails.length * 2, emailsLength + emailLength));
+            }
+
+            ids[size] = id;
+            ages[size] = age;
+            createdAt[size] = created;
+            Integer code = nameCodesByName.get(name);
+            if (code == null) {
+                code = nameCodesByName.size();
+                nameCodesByName.put(name, code);
+            }
+            nameCodes[size] = code;
+            System.arraycopy(email, emailOffset, emails, emailsLength, emailLength);
+            emailsLength += emailLength;
+            emailOffsets[size + 1] = emailsLength;
+            size++;
+        }
+
+        UserColumns build() {
+            // Codes were handed out in order of appearance, renumber them in name order
+            String[] names = nameCodesByName.keySet().toArray(new String[0]);
+            Arrays.sort(names);
+            int[] sortedCodes = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                sortedCodes[nameCodesByName.get(names[i])] = i;
+            }
+            int[] codes = new int[size];
+            for (int row = 0; row < size; row++) {
+                codes[row] = sortedCodes[nameCodes[row]];
+            }
+
+            return new UserColumns(size,
+                    Arrays.copyOf(ids, size),
+                    Arrays.copyOf(ages, size),
+                    Arrays.copyOf(createdAt, size),
+                    codes,
+                    names,
+                    Arrays.copyOf(emails, emailsLength),
+                    Arrays.copyOf(emailOffsets, size + 1));
+        }
+    }
+}
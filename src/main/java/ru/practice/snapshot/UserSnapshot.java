@@ -0,0 +1,309 @@
+package ru.practice.snapshot;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.practice.dao.UserChangeFeed;
+import ru.practice.models.User;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only columnar copy of the users table for analytics-style reads. The table is loaded once by a
+ * streaming scan of plain column values, so no {@link User} entity is created per row, and later kept up to
+ * date from the {@link UserChangeFeed}: {@link #refresh()} re-reads only the users changed since the last one,
+ * or the whole table if changes it had not read yet were purged from the feed.
+ * <p>
+ * A row takes about 30 bytes plus its email, against several hundred for a {@code User} with its strings and
+ * {@code LocalDateTime}. Creation times are kept with millisecond precision. Queries see the snapshot as of
+ * their start and run as parallel streams over the columns.
+ */
+public class UserSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSnapshot.class);
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int CHANGES_BATCH_SIZE = 1000;
+    private static final int IDS_BATCH_SIZE = 1000;
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final String SELECT_ROWS = "select u.id, u.name, u.email, u.age, u.createdAt from User u ";
+
+    private final SessionFactory sessionFactory;
+    private final UserChangeFeed changeFeed;
+    private final Object refreshLock = new Object();
+
+    private volatile UserColumns columns;
+    private volatile long cursor;
+
+    public UserSnapshot(SessionFactory sessionFactory, UserChangeFeed changeFeed) {
+        this.sessionFactory = sessionFactory;
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Reads the whole table, replacing what the snapshot had.
+     */
+    public void load() {
+        synchronized (refreshLock) {
+            long startNanos = System.nanoTime();
+            // Taken before the scan. Every change up to the head has committed, so the scan sees it; changes
+            // above it, including those of transactions still running, are applied again by the next refresh
+            long head = changeFeed.readHead();
+
+            UserColumns loaded = readRows(null);
+            columns = loaded;
+            cursor = head;
+
+            logger.info("User snapshot loaded: {} users, ~{} KB, {} ms", loaded.size,
+                    loaded.estimatedBytes() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    /**
+     * Applies changes made since the last load or refresh; loads the table if it was never loaded.
+     *
+     * @return number of users re-read or removed
+     */
+    public int refresh() {
+        synchronized (refreshLock) {
+            if (columns == null) {
+                load();
+                return columns.size;
+            }
+
+            long tail = changeFeed.readTail();
+            if (tail > cursor + 1) {
+                // Changes after the cursor may have been purged before they were applied; compaction can
+                // also get here, a reload is just slower then
+                logger.warn("User changes after cursor {} were removed before the snapshot read them, reloading",
+                        cursor);
+                load();
+                return columns.size;
+            }
+
+            SortedSet<Integer> changedIds = new TreeSet<>();
+            long newCursor = changeFeed.streamAfter(cursor, CHANGES_BATCH_SIZE,
+                    changes -> changes.forEach(change -> changedIds.add(change.getUserId())));
+            if (changedIds.isEmpty()) {
+                return 0;
+            }
+
+            UserColumns changed = readRows(changedIds);
+            Set<Integer> present = new HashSet<>(changed.size * 2);
+            for (int row = 0; row < changed.size; row++) {
+                present.add(changed.ids[row]);
+            }
+            int[] removed = changedIds.stream().filter(id -> !present.contains(id)).mapToInt(Integer::intValue).toArray();
+
+            columns = columns.apply(changed, removed);
+            cursor = newCursor;
+
+            logger.debug("User snapshot refreshed: {} changed, {} removed, cursor = {}",
+                    changed.size, removed.length, newCursor);
+            return changedIds.size();
+        }
+    }
+
+    /**
+     * Refreshes the snapshot with a fixed delay. A failed refresh is logged and retried on the next run.
+     */
+    public ScheduledFuture<?> scheduleRefresh(ScheduledExecutorService executor, Duration period) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                logger.warn("User snapshot refresh failed: {}", e.getMessage());
+            }
+        }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int size() {
+        return current().size;
+    }
+
+    /**
+     * Id of the last change of the feed reflected in the snapshot.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    public long getEstimatedBytes() {
+        return current().estimatedBytes();
+    }
+
+    public Optional<User> get(int id) {
+        UserColumns c = current();
+        int row = c.rowOf(id);
+        return row < 0 ? Optional.empty() : Optional.of(c.toUser(row));
+    }
+
+    public long countByNamePrefix(String prefix) {
+        UserColumns c = current();
+        int[] codes = c.nameCodeRange(prefix);
+        return rows(c).filter(row -> c.nameCodes[row] >= codes[0] && c.nameCodes[row] < codes[1]).count();
+    }
+
+    /**
+     * Users whose name starts with the prefix, in id order.
+     */
+    public List<User> findByNamePrefix(String prefix, int limit) {
+        UserColumns c = current();
+        int[] codes = c.nameCodeRange(prefix);
+        return rows(c)
+                .filter(row -> c.nameCodes[row] >= codes[0] && c.nameCodes[row] < codes[1])
+                .limit(limit)
+                .mapToObj(c::toUser)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Number of users aged from {@code from} to {@code to} inclusive.
+     */
+    public long countByAgeBetween(int from, int to) {
+        UserColumns c = current();
+        return rows(c).filter(row -> c.ages[row] >= from && c.ages[row] <= to).count();
+    }
+
+    public IntSummaryStatistics ageStatistics() {
+        UserColumns c = current();
+        return rows(c).map(row -> c.ages[row]).summaryStatistics();
+    }
+
+    /**
+     * Number of users per age bucket: element {@code i} counts ages from {@code i * bucketWidth} to
+     * {@code (i + 1) * bucketWidth - 1}.
+     */
+    public long[] ageHistogram(int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("Bucket width should be positive");
+        }
+
+        UserColumns c = current();
+        int maxAge = rows(c).map(row -> c.ages[row]).max().orElse(0);
+        int buckets = Math.max(0, maxAge) / bucketWidth + 1;
+        return rows(c).collect(() -> new long[buckets],
+                (histogram, row) -> histogram[Math.max(0, c.ages[row]) / bucketWidth]++,
+                (left, right) -> Arrays.setAll(left, i -> left[i] + right[i]));
+    }
+
+    /**
+     * Number of users created from {@code from} inclusive to {@code to} exclusive.
+     */
+    public long countCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        long fromMillis = UserColumns.toMillis(from);
+        long toMillis = UserColumns.toMillis(to);
+        UserColumns c = current();
+        return rows(c).filter(row -> c.createdAt[row] != UserColumns.NO_TIME
+                && c.createdAt[row] >= fromMillis && c.createdAt[row] < toMillis).count();
+    }
+
+    /**
+     * Number of users created per day from {@code from} to {@code to} inclusive; days without sign-ups are left out.
+     */
+    public SortedMap<LocalDate, Long> signUpsPerDay(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Date range is empty");
+        }
+
+        long fromMillis = UserColumns.toMillis(from.atStartOfDay());
+        long toMillis = UserColumns.toMillis(to.plusDays(1).atStartOfDay());
+        int days = (int) (to.toEpochDay() - from.toEpochDay()) + 1;
+        UserColumns c = current();
+        long[] counts = rows(c)
+                .filter(row -> c.createdAt[row] != UserColumns.NO_TIME
+                        && c.createdAt[row] >= fromMillis && c.createdAt[row] < toMillis)
+                .collect(() -> new long[days],
+                        (perDay, row) -> perDay[(int) ((c.createdAt[row] - fromMillis) / MILLIS_PER_DAY)]++,
+                        (left, right) -> Arrays.setAll(left, i -> left[i] + right[i]));
+
+        SortedMap<LocalDate, Long> signUps = new TreeMap<>();
+        for (int day = 0; day < days; day++) {
+            if (counts[day] > 0) {
+                signUps.put(from.plusDays(day), counts[day]);
+            }
+        }
+        return signUps;
+    }
+
+    private static IntStream rows(UserColumns c) {
+        return IntStream.range(0, c.size).parallel();
+    }
+
+    private UserColumns current() {
+        UserColumns current = columns;
+        if (current == null) {
+            throw new IllegalStateException("User snapshot is not loaded");
+        }
+        return current;
+    }
+
+    /**
+     * Streams rows of the given users, or of the whole table when ids are null, into a new column set.
+     */
+    private UserColumns readRows(SortedSet<Integer> ids) {
+        UserColumns.Builder builder = new UserColumns.Builder(ids == null ? 1024 : ids.size());
+
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            session.setDefaultReadOnly(true);
+            transaction = session.beginTransaction();
+
+            if (ids == null) {
+                scan(session.createSelectionQuery(SELECT_ROWS + "order by u.id", Object[].class)
+                        .setFetchSize(FETCH_SIZE)
+                        .scroll(ScrollMode.FORWARD_ONLY), builder);
+            } else {
+                List<Integer> batch = new ArrayList<>(IDS_BATCH_SIZE);
+                for (Iterator<Integer> iterator = ids.iterator(); iterator.hasNext(); ) {
+                    batch.add(iterator.next());
+                    if (batch.size() == IDS_BATCH_SIZE || !iterator.hasNext()) {
+                        scan(session.createSelectionQuery(SELECT_ROWS + "where u.id in :ids order by u.id", Object[].class)
+                                .setParameter("ids", batch)
+                                .scroll(ScrollMode.FORWARD_ONLY), builder);
+                        batch.clear();
+                    }
+                }
+            }
+
+            transaction.commit();
+            return builder.build();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error while reading users snapshot from database");
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static void scan(ScrollableResults<Object[]> results, UserColumns.Builder builder) {
+        try (results) {
+            while (results.next()) {
+                Object[] row = results.get();
+                builder.add((Integer) row[0], (String) row[1], (String) row[2], (Integer) row[3], (LocalDateTime) row[4]);
+            }
+        }
+    }
+}
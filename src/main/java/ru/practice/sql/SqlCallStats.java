@@ -0,0 +1,83 @@
+package ru.practice.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statements that one tracked call sent to the database, in the order they were prepared.
+ */
+public class SqlCallStats {
+
+    private final String operation;
+    private final SqlCallStats outer;
+    private final List<String> statements = new ArrayList<>();
+    private int setupStatementCount;
+    private long executionNanos;
+
+    SqlCallStats(String operation, SqlCallStats outer) {
+        this.operation = operation;
+        this.outer = outer;
+    }
+
+    SqlCallStats getOuter() {
+        return outer;
+    }
+
+    void addStatement(String shape) {
+        boolean setup = shape.startsWith(SqlCallTracker.SETUP);
+        for (SqlCallStats stats = this; stats != null; stats = stats.outer) {
+            stats.statements.add(shape);
+            if (setup) {
+                stats.setupStatementCount++;
+            }
+        }
+    }
+
+    void addExecutionNanos(long nanos) {
+        for (SqlCallStats stats = this; stats != null; stats = stats.outer) {
+            stats.executionNanos += nanos;
+        }
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    /**
+     * Statements marked with {@link SqlCallTracker#SETUP}; they are included in {@link #getStatementCount()}.
+     */
+    public int getSetupStatementCount() {
+        return setupStatementCount;
+    }
+
+    /**
+     * Statement shapes, see {@link SqlShapes#shape(String)}.
+     */
+    public List<String> getStatements() {
+        return Collections.unmodifiableList(statements);
+    }
+
+    /**
+     * Number of statements with the given shape; more than one of the same select usually means N+1.
+     */
+    public int countOf(String shape) {
+        return Collections.frequency(statements, shape);
+    }
+
+    public long getExecutionNanos() {
+        return executionNanos;
+    }
+
+    @Override
+    public String toString() {
+        return operation +
+                ": statements= " + statements.size() +
+                ", execution= " + TimeUnit.NANOSECONDS.toMicros(executionNanos) + "us";
+    }
+}
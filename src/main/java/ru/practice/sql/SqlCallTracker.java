@@ -0,0 +1,118 @@
+package ru.practice.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Counts the statements a call sends to the database. {@link SqlInspector} and {@link SqlTimingListener}
+ * report every statement Hibernate prepares and executes on the current thread; {@link #track} adds them up
+ * per call and warns when a call goes over its statement budget. Statements slower than the threshold are
+ * logged with their shape whether a call is tracked or not.
+ * <p>
+ * Only statements of the calling thread are counted, work that a DAO hands to other threads is not.
+ * Neither are statements sent over the raw connection of {@code Session.doWork}, which Hibernate does not
+ * inspect: the DAO sends its statements as queries, {@code doWork} is left to schema maintenance
+ * ({@code UserPartitions}, {@code EmailNormalization}) and to {@code PgNotifyInvalidation.publish}.
+ */
+public final class SqlCallTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlCallTracker.class);
+
+    /**
+     * Prefix of statements that only set up the connection for the call, such as PostgreSQL timeouts under a
+     * {@code Deadline}. They are listed with the call's statements but not counted against its budget, so a
+     * budget does not have to know which operations set them up.
+     */
+    public static final String SETUP = "/* setup */ ";
+
+    private static final ThreadLocal<SqlCallStats> current = new ThreadLocal<>();
+    private static final ThreadLocal<String> lastStatement = new ThreadLocal<>();
+
+    private static volatile long slowQueryNanos =
+            Duration.ofMillis(Long.getLong("sql.slowQueryMs", 200)).toNanos();
+
+    private SqlCallTracker() {
+    }
+
+    /**
+     * Runs the call and logs a warning with its statements when there were more than the budget.
+     * Statements of a call tracked inside another one count towards both.
+     */
+    public static <T> T track(String operation, int budget, Supplier<T> call) {
+        SqlCallStats stats = enter(operation);
+        try {
+            return call.get();
+        } finally {
+            exit(stats);
+            if (stats.getStatementCount() - stats.getSetupStatementCount() > budget) {
+                logger.warn("{} ran {} statements ({} setup), budget is {}: {}", operation,
+                        stats.getStatementCount(), stats.getSetupStatementCount(), budget, stats.getStatements());
+            } else {
+                logger.debug("{}", stats);
+            }
+        }
+    }
+
+    /**
+     * Runs the call and returns its statements, e.g. to assert a query count in a test.
+     */
+    public static SqlCallStats measure(Runnable call) {
+        SqlCallStats stats = enter("measured call");
+        try {
+            call.run();
+            return stats;
+        } finally {
+            exit(stats);
+        }
+    }
+
+    public static Duration getSlowQueryThreshold() {
+        return Duration.ofNanos(slowQueryNanos);
+    }
+
+    /**
+     * Defaults to the {@code sql.slowQueryMs} system property or 200 ms.
+     */
+    public static void setSlowQueryThreshold(Duration threshold) {
+        slowQueryNanos = threshold.toNanos();
+    }
+
+    private static SqlCallStats enter(String operation) {
+        SqlCallStats stats = new SqlCallStats(operation, current.get());
+        current.set(stats);
+        return stats;
+    }
+
+    private static void exit(SqlCallStats stats) {
+        if (stats.getOuter() == null) {
+            current.remove();
+        } else {
+            current.set(stats.getOuter());
+        }
+    }
+
+    static void statementPrepared(String sql) {
+        String shape = SqlShapes.shape(sql);
+        lastStatement.set(shape);
+
+        SqlCallStats stats = current.get();
+        if (stats != null) {
+            stats.addStatement(shape);
+        }
+    }
+
+    static void statementExecuted(long nanos) {
+        SqlCallStats stats = current.get();
+        if (stats != null) {
+            stats.addExecutionNanos(nanos);
+        }
+
+        if (nanos >= slowQueryNanos) {
+            logger.warn("Slow query, {} ms{}: {}", nanos / 1_000_000,
+                    stats != null ? " in " + stats.getOperation() : "", lastStatement.get());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practice.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Reports every statement Hibernate prepares to {@link SqlCallTracker}, leaving the SQL unchanged.
+ * Registered with {@code hibernate.session_factory.statement_inspector}.
+ */
+public class SqlInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        SqlCallTracker.statementPrepared(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practice.sql;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public final class SqlShapes {
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SqlShapes() {
+    }
+
+    /**
+     * Statement text with collapsed whitespace and runs of bind parameters written as {@code ?xN}, so
+     * {@code id in (?,?,?)} becomes {@code id in (?x3)}. Hibernate binds all values, so the text is
+     * already free of literals.
+     */
+    public static String shape(String sql) {
+        String compact = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        Matcher matcher = PARAMETER_LIST.matcher(compact);
+        if (!matcher.find()) {
+            return compact;
+        }
+
+        StringBuilder shape = new StringBuilder(compact.length());
+        do {
+            int parameters = 0;
+            for (int i = matcher.start(); i < matcher.end(); i++) {
+                if (compact.charAt(i) == '?') {
+                    parameters++;
+                }
+            }
+            matcher.appendReplacement(shape, "?x" + parameters);
+        } while (matcher.find());
+        matcher.appendTail(shape);
+        return shape.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package ru.practice.sql;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Times JDBC executions for the slow-query log of {@link SqlCallTracker}. A listener instance belongs to one
+ * session, so the start time needs no synchronization. Registered with {@code hibernate.session.events.auto}.
+ */
+public class SqlTimingListener implements SessionEventListener {
+
+    private long startNanos;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SqlCallTracker.statementExecuted(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SqlCallTracker.statementExecuted(System.nanoTime() - startNanos);
+    }
+}
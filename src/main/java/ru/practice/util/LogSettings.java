@@ -0,0 +1,57 @@
+package ru.practice.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runtime adjustments of the logback configuration for the non-interactive modes of {@code App}.
+ */
+public final class LogSettings {
+
+    private LogSettings() {
+    }
+
+    /**
+     * Raises the application and Hibernate loggers to WARN, except the given ones.
+     * Per-operation debug logging would otherwise dominate the cost of every call.
+     */
+    public static void quietApplicationLoggers(Class<?>... except) {
+        LoggerContext context = loggerContext();
+        if (context == null) {
+            return;
+        }
+
+        outer:
+        for (Logger logger : context.getLoggerList()) {
+            if (!logger.getName().startsWith("ru.practice")) {
+                continue;
+            }
+            for (Class<?> type : except) {
+                if (logger.getName().equals(type.getName())) {
+                    continue outer;
+                }
+            }
+            logger.setLevel(Level.WARN);
+        }
+        context.getLogger("org.hibernate").setLevel(Level.WARN);
+    }
+
+    /**
+     * Stops logging to the console so that stdout carries only the program output. The log file is kept.
+     */
+    public static void detachConsole() {
+        LoggerContext context = loggerContext();
+        if (context != null) {
+            context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).detachAppender("CONSOLE");
+        }
+    }
+
+    private static LoggerContext loggerContext() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext) {
+            return (LoggerContext) LoggerFactory.getILoggerFactory();
+        }
+        return null;
+    }
+}
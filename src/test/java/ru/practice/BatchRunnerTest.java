@@ -0,0 +1,123 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practice.batch.BatchRunner;
+import ru.practice.batch.BatchSummary;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BatchRunnerTest {
+
+    @Mock
+    private UserService userService;
+
+    @Test
+    public void testRun_groupsConsecutiveCreates() throws IOException {
+        when(userService.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String result = run("create a@ya.ru 20 Ann Lee\ncreate b@ya.ru 30 Bob\ncreate c@ya.ru 40 Cid\n", 2);
+
+        verify(userService, times(2)).saveAll(anyList());
+        verify(userService, never()).save(any());
+        String[] lines = result.split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("1\tOK\tcreate\t0\tAnn Lee\ta@ya.ru\t20\t"));
+    }
+
+    @Test
+    public void testRun_whenBatchIsRejected_savesOneByOne() throws IOException {
+        when(userService.saveAll(anyList())).thenThrow(new IllegalArgumentException("This email is already taken. "));
+        when(userService.save(any())).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            if (user.getEmail().equals("a@ya.ru")) {
+                throw new IllegalArgumentException("This email is already taken. ");
+            }
+            return user;
+        });
+
+        String result = run("create a@ya.ru 20 Ann\ncreate b@ya.ru 30 Bob\n", 10);
+
+        String[] lines = result.split("\n");
+        assertEquals("1\tERROR\tcreate\tThis email is already taken.", lines[0]);
+        assertTrue(lines[1].startsWith("2\tOK\tcreate\t"));
+    }
+
+    @Test
+    public void testRun_whenCreateIsInvalid_savesTheRestAsBatch() throws IOException {
+        when(userService.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String result = run("create a@ya.ru 20 Ann\ncreate b@ya.ru 130 Bob\ncreate c@ya.ru 40 Cid\n", 10);
+
+        verify(userService).saveAll(argThat(users -> users.size() == 2));
+        verify(userService, never()).save(any());
+        String[] lines = result.split("\n");
+        assertTrue(lines[0].startsWith("1\tOK\tcreate\t"));
+        assertEquals("2\tERROR\tcreate\tAge should be in range of 0 and 120 years.", lines[1]);
+        assertTrue(lines[2].startsWith("3\tOK\tcreate\t"));
+    }
+
+    @Test
+    public void testRun_whenEmailRepeatsInGroup_reportsRepeatAndSavesTheRestAsBatch() throws IOException {
+        when(userService.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String result = run("create bad@ya.ru 130 Old\ncreate a@ya.ru 20 Ann\ncreate b@ya.ru 30 Bob\n"
+                + "create A@Ya.ru 40 Ann Copy\ncreate bad@ya.ru 50 New\n", 10);
+
+        verify(userService).saveAll(argThat(users -> users.size() == 3));
+        verify(userService, never()).save(any());
+        String[] lines = result.split("\n");
+        assertEquals("1\tERROR\tcreate\tAge should be in range of 0 and 120 years.", lines[0]);
+        assertTrue(lines[1].startsWith("2\tOK\tcreate\t"));
+        assertTrue(lines[2].startsWith("3\tOK\tcreate\t"));
+        assertEquals("4\tERROR\tcreate\tThis email occurs more than once in the batch. It repeats line 2.", lines[3]);
+        // The first line with this email was rejected, so this one is not a duplicate of anything saved
+        assertTrue(lines[4].startsWith("5\tOK\tcreate\t0\tNew\tbad@ya.ru\t50\t"));
+    }
+
+    @Test
+    public void testRun_readUpdateDeleteList() throws IOException {
+        User user = new User(1, "Ann", "a@ya.ru", 20);
+        when(userService.read(1)).thenReturn(Optional.of(user));
+        when(userService.read(2)).thenReturn(Optional.empty());
+        when(userService.update(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userService.readAll()).thenReturn(List.of(user));
+
+        StringWriter out = new StringWriter();
+        BatchSummary summary = new BatchRunner(userService, out, 10).run(new BufferedReader(new StringReader(
+                "# comment\n\nread 1\nread 2\nupdate 1 new@ya.ru 21 Ann New\ndelete 1\nlist\nunknown\nread x\n")));
+
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[0].startsWith("3\tOK\tread\t1\tAnn\ta@ya.ru\t20\t"));
+        assertEquals("4\tNOT_FOUND\tread\t2", lines[1]);
+        assertTrue(lines[2].startsWith("5\tOK\tupdate\t1\tAnn New\tnew@ya.ru\t21\t"));
+        assertEquals("6\tOK\tdelete\t1", lines[3]);
+        assertTrue(lines[4].startsWith("7\tOK\tlist\t1\t"));
+        assertEquals("8\tERROR\tunknown\tUnsupported command", lines[5]);
+        assertTrue(lines[6].startsWith("9\tERROR\tread\t"));
+        verify(userService).delete(1);
+
+        assertEquals(7, summary.getTotal());
+        assertEquals(1, summary.getCount("read", BatchSummary.Status.NOT_FOUND));
+    }
+
+    private String run(String script, int batchSize) throws IOException {
+        StringWriter out = new StringWriter();
+        new BatchRunner(userService, out, batchSize).run(new BufferedReader(new StringReader(script)));
+        return out.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practice.cache.CacheWarmer;
+import ru.practice.cache.UserCache;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CacheWarmerTest {
+
+    @Mock
+    private UserService userService;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testDump_keepsHottestFirst() {
+        UserCache cache = new UserCache(10, Duration.ofMinutes(1));
+        for (int id = 1; id <= 3; id++) {
+            cache.put(new User(id, "u", "u" + id + "@ya.ru", 1), cache.generation());
+        }
+        cache.get(1);
+
+        CacheWarmer warmer = new CacheWarmer(cache, userService, directory.resolve("users.warm"));
+        warmer.dump(2);
+
+        assertArrayEquals(new int[]{1, 3}, warmer.readIds());
+    }
+
+    @Test
+    public void testReadIds_whenFileIsMissingOrCorrupt() throws Exception {
+        UserCache cache = new UserCache(10, Duration.ofMinutes(1));
+        Path file = directory.resolve("users.warm");
+        CacheWarmer warmer = new CacheWarmer(cache, userService, file);
+
+        assertEquals(0, warmer.readIds().length);
+
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertEquals(0, warmer.readIds().length);
+    }
+
+    @Test
+    public void testWarmUp_loadsSavedUsersInBatches() throws Exception {
+        Path file = directory.resolve("users.warm");
+        UserCache before = new UserCache(2000, Duration.ofMinutes(1));
+        for (int id = 1; id <= 1200; id++) {
+            before.put(new User(id, "u", "u" + id + "@ya.ru", 1), before.generation());
+        }
+        new CacheWarmer(before, userService, file).dump(1200);
+
+        when(userService.readByIds(anyList())).thenAnswer(invocation -> {
+            List<Integer> ids = invocation.getArgument(0);
+            List<User> users = new ArrayList<>();
+            for (int id : ids) {
+                users.add(new User(id, "u", "u" + id + "@ya.ru", 1));
+            }
+            return users;
+        });
+
+        UserCache after = new UserCache(2000, Duration.ofMinutes(1));
+        CacheWarmer warmer = new CacheWarmer(after, userService, file);
+        assertEquals(-1, warmer.getWarmUpMillis());
+
+        assertEquals(1200, warmer.warmUp(Runnable::run).get());
+
+        assertEquals(1200, after.size());
+        assertEquals(1200, warmer.getWarmedUsers());
+        assertTrue(warmer.getWarmUpMillis() >= 0);
+        assertTrue(Double.isNaN(warmer.getWarmUpHitRate()));
+        assertTrue(after.get(1200).isPresent());
+        verify(userService, times(3)).readByIds(anyList());
+    }
+
+    @Test
+    public void testWarmUp_rereadsBatchInvalidatedWhileLoading() throws Exception {
+        Path file = directory.resolve("users.warm");
+        UserCache before = new UserCache(10, Duration.ofMinutes(1));
+        for (int id = 1; id <= 3; id++) {
+            before.put(new User(id, "u", "u" + id + "@ya.ru", 1), before.generation());
+        }
+        new CacheWarmer(before, userService, file).dump(3);
+
+        UserCache after = new UserCache(10, Duration.ofMinutes(1));
+        AtomicInteger reads = new AtomicInteger();
+        when(userService.readByIds(anyList())).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() == 1) {
+                // A user changes on another node between the read and the put
+                after.invalidate(2);
+            }
+            List<Integer> ids = invocation.getArgument(0);
+            List<User> users = new ArrayList<>();
+            for (int id : ids) {
+                users.add(new User(id, "u" + reads.get(), "u" + id + "@ya.ru", 1));
+            }
+            return users;
+        });
+
+        CacheWarmer warmer = new CacheWarmer(after, userService, file);
+
+        assertEquals(3, warmer.warmUp(Runnable::run).get());
+        assertEquals(3, warmer.getWarmedUsers());
+        assertEquals("u2", after.get(2).orElseThrow().getName());
+        verify(userService, times(2)).readByIds(anyList());
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import ru.practice.dao.ConcurrencyLimiter;
+import ru.practice.dao.Deadline;
+import ru.practice.dao.DeadlineExceededException;
+import ru.practice.dao.OverloadException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testAcquire_whenQueueIsFull() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.fixed("test", 1, 0, Duration.ofSeconds(1));
+        limiter.acquire();
+
+        assertThrows(OverloadException.class, limiter::acquire);
+        assertEquals(1, limiter.getRejectedQueueFullCount());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testAcquire_whenWaitRunsOut() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.fixed("test", 1, 1, Duration.ofMillis(20));
+        limiter.acquire();
+
+        assertThrows(OverloadException.class, limiter::acquire);
+        assertEquals(1, limiter.getRejectedTimeoutCount());
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    public void testAcquire_waitsForRelease() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.fixed("test", 1, 1, Duration.ofSeconds(5));
+        limiter.acquire();
+
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            limiter.acquire();
+            admitted.countDown();
+        });
+        waiter.start();
+
+        assertFalse(admitted.await(50, TimeUnit.MILLISECONDS));
+        limiter.release(FAST, true);
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        assertEquals(2, limiter.getAcceptedCount());
+    }
+
+    @Test
+    public void testAdaptive_shrinksOnSlowCallsAndGrowsOnFastOnes() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.adaptive("test", 10, 2, 20,
+                0, Duration.ZERO, Duration.ofMillis(100));
+
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+            limiter.release(SLOW, true);
+        }
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            int permits = limiter.getLimit();
+            for (int p = 0; p < permits; p++) {
+                limiter.acquire();
+            }
+            for (int p = 0; p < permits; p++) {
+                limiter.release(FAST, true);
+            }
+        }
+        assertTrue(limiter.getLimit() > 2);
+        assertTrue(limiter.getLimit() <= 20);
+    }
+
+    @Test
+    public void testAdaptive_doesNotGrowWhileUnderused() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.adaptive("test", 4, 2, 20,
+                0, Duration.ZERO, Duration.ofMillis(100));
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(FAST, true);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testAcquire_waitIsCappedByDeadline() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.fixed("test", 1, 1, Duration.ofSeconds(5));
+        limiter.acquire();
+
+        long startNanos = System.nanoTime();
+        assertThrows(DeadlineExceededException.class,
+                () -> Deadline.within(Duration.ofMillis(50), limiter::acquire));
+
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, limiter.getRejectedTimeoutCount());
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    public void testAdaptive_shrinksOnFailures() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.adaptive("test", 10, 1, 10,
+                0, Duration.ZERO, Duration.ofMillis(100));
+
+        limiter.acquire();
+        limiter.release(FAST, false);
+
+        assertEquals(9, limiter.getLimit());
+    }
+}
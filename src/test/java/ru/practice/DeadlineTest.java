@@ -0,0 +1,54 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import ru.practice.dao.Deadline;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineTest {
+
+    @Test
+    public void testWithin_setsAndRestoresCurrentDeadline() {
+        assertTrue(Deadline.current().isEmpty());
+
+        Deadline.within(Duration.ofSeconds(10), () -> {
+            assertTrue(Deadline.current().isPresent());
+            assertFalse(Deadline.current().get().isExpired());
+        });
+
+        assertTrue(Deadline.current().isEmpty());
+    }
+
+    @Test
+    public void testWithin_whenNestedDeadlineIsLonger() {
+        long remaining = Deadline.within(Duration.ofMillis(100),
+                () -> Deadline.within(Duration.ofSeconds(10), () -> Deadline.current().get().remainingNanos()));
+
+        assertTrue(remaining <= Duration.ofMillis(100).toNanos());
+    }
+
+    @Test
+    public void testPropagate_carriesDeadlineToAnotherThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Optional<Deadline> inTask = Deadline.within(Duration.ofSeconds(10), () -> {
+                try {
+                    return executor.submit(Deadline.propagate(Deadline::current)).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Optional<Deadline> afterTask = executor.submit(Deadline::current).get();
+
+            assertTrue(inTask.isPresent());
+            assertTrue(afterTask.isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practice;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.EmailNormalization;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+import ru.practice.services.Emails;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class EmailNormalizationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static UserDAOImpl userDAOImpl;
+
+    @BeforeAll
+    static void initHibernate() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        sessionFactory = configuration.buildSessionFactory();
+        userDAOImpl = new UserDAOImpl(sessionFactory);
+    }
+
+    @AfterAll
+    static void closeHibernate() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void testInstall_rewritesLegacyRowsAndGuardsTheColumn() {
+        User ann = userDAOImpl.save(new User("ann", "Ann@Ya.RU", 20));
+        userDAOImpl.save(new User("bob", "bob@ya.ru", 30));
+        User bobCopy = userDAOImpl.save(new User("bob copy", "BOB@ya.ru", 31));
+        userDAOImpl.save(new User("cid", "  Cid@Ya.ru", 40));
+        userDAOImpl.save(new User("eve", "\tEve@Ya.ru", 41));
+        User ida = userDAOImpl.save(new User("ida", "\u0130da@ya.ru", 42));
+
+        EmailNormalization normalization = new EmailNormalization(sessionFactory);
+        List<String> rewritten = new ArrayList<>(normalization.install());
+        Collections.sort(rewritten);
+        assertEquals(List.of("ann@ya.ru", "cid@ya.ru", "eve@ya.ru", Emails.normalize("\u0130da@ya.ru")), rewritten);
+
+        assertEquals(ann.getId(), userDAOImpl.readByEmail("ann@ya.ru").orElseThrow().getId());
+        // Java lowers the dotted capital I to "i" plus a combining dot; the lookup has to find the row that way
+        assertEquals(ida.getId(), userDAOImpl.readByEmail(Emails.normalize("\u0130DA@YA.RU")).orElseThrow().getId());
+        assertEquals("BOB@ya.ru", userDAOImpl.readById(bobCopy.getId()).orElseThrow().getEmail());
+        assertFalse(hasConstraint());
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(1L, session.createNativeQuery("select count(*) from user_changes "
+                    + "where user_id = :id and operation = 'UPDATED'", Long.class)
+                    .setParameter("id", ann.getId())
+                    .getSingleResult());
+        }
+
+        userDAOImpl.delete(bobCopy.getId());
+        assertTrue(normalization.install().isEmpty());
+
+        assertTrue(hasConstraint());
+        assertThrows(RuntimeException.class, () -> userDAOImpl.save(new User("dan", "Dan@ya.ru", 50)));
+        assertThrows(RuntimeException.class, () -> userDAOImpl.save(new User("dan", "dan@ya.ru ", 50)));
+        // Whatever the server's lower() makes of non-ASCII letters, the constraint accepts what Java wrote
+        userDAOImpl.save(new User("olga", Emails.normalize("\u00d6lga@\u0397\u03a3.ru"), 51));
+        normalization.install();
+    }
+
+    private static boolean hasConstraint() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createNativeQuery("select count(*) from pg_constraint where conname = :name", Long.class)
+                    .setParameter("name", EmailNormalization.CONSTRAINT)
+                    .getSingleResult() > 0;
+        }
+    }
+}
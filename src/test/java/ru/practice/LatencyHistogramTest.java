@@ -0,0 +1,46 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import ru.practice.load.LatencyHistogram;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles_areWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5_000_000, histogram.getPercentileNanos(50), 5_000_000 * 0.07);
+        assertEquals(9_900_000, histogram.getPercentileNanos(99), 9_900_000 * 0.07);
+        assertEquals(10_000_000, histogram.getPercentileNanos(100));
+        assertEquals(10_000_000, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testMerge_combinesCounts() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(1_000_000);
+
+        first.merge(second);
+
+        assertEquals(2, first.getCount());
+        assertEquals(10, first.getPercentileNanos(50));
+        assertEquals(1_000_000, first.getMaxNanos());
+        assertEquals(500_005, first.getMeanNanos(), 0.001);
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practice.load.LoadTest;
+import ru.practice.load.LoadTestConfig;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LoadTestTest {
+
+    @Mock
+    private UserService userService;
+
+    @Test
+    public void testCleanUp_deletesPreloadedAndCreatedUsers() {
+        AtomicInteger sequence = new AtomicInteger();
+        when(userService.saveAll(anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            List<User> saved = new ArrayList<>();
+            for (User user : users) {
+                saved.add(withId(sequence, user));
+            }
+            return saved;
+        });
+        when(userService.save(any(User.class))).thenAnswer(invocation -> withId(sequence, invocation.getArgument(0)));
+        LoadTest loadTest = new LoadTest(LoadTestConfig.parse(new String[]{
+                "keys=3", "threads=2", "duration=1", "rate=40", "mix=create:1"}), userService);
+
+        loadTest.preload();
+        loadTest.run();
+        loadTest.cleanUp();
+
+        Set<Integer> deleted = new HashSet<>();
+        mockingDetails(userService).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("delete"))
+                .forEach(invocation -> assertTrue(deleted.add(invocation.getArgument(0))));
+        assertTrue(sequence.get() > 3);
+        assertEquals(sequence.get(), deleted.size());
+        for (int id = 1; id <= sequence.get(); id++) {
+            assertTrue(deleted.contains(id));
+        }
+
+        loadTest.cleanUp();
+        verify(userService, times(sequence.get())).delete(anyInt());
+    }
+
+    @Test
+    public void testPreload_savesKeysInChunksAndCleansUpAfterFailedChunk() {
+        AtomicInteger sequence = new AtomicInteger();
+        List<Integer> chunks = new ArrayList<>();
+        when(userService.saveAll(anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            chunks.add(users.size());
+            if (chunks.size() == 3) {
+                throw new IllegalStateException("connection lost");
+            }
+            List<User> saved = new ArrayList<>();
+            for (User user : users) {
+                saved.add(withId(sequence, user));
+            }
+            return saved;
+        });
+        LoadTest loadTest = new LoadTest(LoadTestConfig.parse(new String[]{"keys=1200"}), userService);
+
+        assertThrows(IllegalStateException.class, loadTest::preload);
+        assertEquals(List.of(500, 500, 200), chunks);
+        verify(userService, never()).save(any(User.class));
+
+        loadTest.cleanUp();
+        verify(userService, times(1000)).delete(anyInt());
+    }
+
+    private static User withId(AtomicInteger sequence, User user) {
+        return new User(sequence.incrementAndGet(), user.getName(), user.getEmail(), user.getAge());
+    }
+}
@@ -0,0 +1,145 @@
+package ru.practice;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.ParallelUserScan;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class ParallelUserScanTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static UserDAOImpl userDAOImpl;
+
+    @BeforeAll
+    static void initHibernate() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        sessionFactory = configuration.buildSessionFactory();
+        userDAOImpl = new UserDAOImpl(sessionFactory);
+    }
+
+    @BeforeEach
+    void resetDB() {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            session.createNativeQuery("truncate table users, user_changes").executeUpdate();
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    public void testForEach_whenOrdered() {
+        List<Integer> savedIds = saveUsers(1050);
+
+        List<Integer> scannedIds = new ArrayList<>();
+        try (ParallelUserScan scan = new ParallelUserScan(sessionFactory, 4, 100)) {
+            scan.forEach(true, user -> scannedIds.add(user.getId()));
+        }
+
+        assertEquals(savedIds, scannedIds);
+    }
+
+    @Test
+    public void testForEach_whenUnordered() {
+        List<Integer> savedIds = saveUsers(1050);
+        userDAOImpl.delete(savedIds.get(500));
+
+        Set<Integer> scannedIds = ConcurrentHashMap.newKeySet();
+        try (ParallelUserScan scan = new ParallelUserScan(sessionFactory, 4, 100)) {
+            scan.forEach(false, user -> assertTrue(scannedIds.add(user.getId())));
+        }
+
+        Set<Integer> expected = new HashSet<>(savedIds);
+        expected.remove(savedIds.get(500));
+        assertEquals(expected, scannedIds);
+    }
+
+    @Test
+    public void testExecute_runsPipelineOnScanWorkers() {
+        saveUsers(300);
+
+        try (ParallelUserScan scan = new ParallelUserScan(sessionFactory, 2, 50)) {
+            long adults = scan.execute(false, users -> users.filter(user -> user.getAge() >= 18).count());
+
+            assertEquals(300 - 18 * 3, adults);
+        }
+    }
+
+    @Test
+    public void testForEach_whenTableIsEmpty() {
+        try (ParallelUserScan scan = new ParallelUserScan(sessionFactory, 2)) {
+            long count = scan.execute(true, users -> users.count());
+
+            assertEquals(0, count);
+        }
+    }
+
+    private List<Integer> saveUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User("user" + i, "user" + i + "@ya.ru", i % 100));
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        for (User user : userDAOImpl.saveAll(users)) {
+            ids.add(user.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practice;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practice.dao.Deadline;
+import ru.practice.dao.DeadlineExceededException;
+import ru.practice.dao.RetryPolicy;
+import ru.practice.dao.RetryingUserDAO;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RetryPolicyTest {
+
+    @Mock
+    private UserDAOImpl userDAOImpl;
+
+    private static RuntimeException deadlock() {
+        return new LockAcquisitionException("deadlock detected", new SQLException("deadlock detected", "40P01"));
+    }
+
+    private static RetryPolicy policy(int maxAttempts, double maxTokens) {
+        return new RetryPolicy("test", maxAttempts, Duration.ofMillis(1), Duration.ofMillis(2), 0.1, maxTokens);
+    }
+
+    @Test
+    public void testIsTransient() {
+        assertTrue(RetryPolicy.isTransient(deadlock()));
+        assertTrue(RetryPolicy.isTransient(new RuntimeException(new SQLException("could not serialize", "40001"))));
+        assertTrue(RetryPolicy.isTransient(new RuntimeException(new SQLException("connection refused", "08001"))));
+        assertFalse(RetryPolicy.isTransient(new ConstraintViolationException("duplicate key",
+                new SQLException("duplicate key", "23505"), "users_email_key")));
+        assertFalse(RetryPolicy.isTransient(new DeadlineExceededException("Timeout while saving user", deadlock())));
+        assertFalse(RetryPolicy.isTransient(new IllegalArgumentException("User is invalid")));
+    }
+
+    @Test
+    public void testExecute_retriesTransientFailure() {
+        RetryPolicy retryPolicy = policy(4, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryPolicy.execute("test", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw deadlock();
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, retryPolicy.getRetryCount());
+        assertEquals(1, retryPolicy.getRecoveredCount());
+    }
+
+    @Test
+    public void testExecute_doesNotRetryPermanentFailure() {
+        RetryPolicy retryPolicy = policy(4, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ConstraintViolationException.class, () -> retryPolicy.execute("test", () -> {
+            attempts.incrementAndGet();
+            throw new ConstraintViolationException("duplicate key",
+                    new SQLException("duplicate key", "23505"), "users_email_key");
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(1, retryPolicy.getPermanentFailureCount());
+    }
+
+    @Test
+    public void testExecute_stopsAfterMaxAttempts() {
+        RetryPolicy retryPolicy = policy(3, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(LockAcquisitionException.class, () -> retryPolicy.execute("test", () -> {
+            attempts.incrementAndGet();
+            throw deadlock();
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(1, retryPolicy.getExhaustedCount());
+    }
+
+    @Test
+    public void testExecute_stopsWhenBudgetIsSpent() {
+        RetryPolicy retryPolicy = policy(10, 2);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(LockAcquisitionException.class, () -> retryPolicy.execute("test", () -> {
+            attempts.incrementAndGet();
+            throw deadlock();
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(1, retryPolicy.getBudgetExhaustedCount());
+        assertTrue(retryPolicy.getRetryTokens() < 1);
+    }
+
+    @Test
+    public void testExecute_doesNotSleepPastDeadline() {
+        RetryPolicy retryPolicy = new RetryPolicy("test", 4, Duration.ofSeconds(10), Duration.ofSeconds(10), 0.1, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(LockAcquisitionException.class, () -> Deadline.within(Duration.ofMillis(100),
+                () -> retryPolicy.execute("test", () -> {
+                    attempts.incrementAndGet();
+                    throw deadlock();
+                })));
+
+        assertTrue(attempts.get() <= 2);
+    }
+
+    @Test
+    public void testSave_retriesWithOriginalId() {
+        User user = new User("name", "name@ya.ru", 30);
+        AtomicInteger attempts = new AtomicInteger();
+        when(userDAOImpl.save(any())).thenAnswer(invocation -> {
+            User saved = invocation.getArgument(0);
+            assertEquals(0, saved.getId());
+            saved.setId(42);
+            if (attempts.incrementAndGet() == 1) {
+                throw deadlock();
+            }
+            return saved;
+        });
+
+        User saved = new RetryingUserDAO(userDAOImpl, policy(4, 10)).save(user);
+
+        assertEquals(42, saved.getId());
+        verify(userDAOImpl, times(2)).save(user);
+    }
+}
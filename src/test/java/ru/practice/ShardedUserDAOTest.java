@@ -0,0 +1,213 @@
+package ru.practice;
+
+import jakarta.persistence.EntityExistsException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.ShardedUserDAO;
+import ru.practice.models.EmailRoute;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class ShardedUserDAOTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> shard0 = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("shard0")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Container
+    private static final PostgreSQLContainer<?> shard1 = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("shard1")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static List<SessionFactory> sessionFactories;
+    private static ShardedUserDAO shardedUserDAO;
+
+    @BeforeAll
+    static void initHibernate() {
+        sessionFactories = new ArrayList<>();
+        for (PostgreSQLContainer<?> postgres : List.of(shard0, shard1)) {
+            Configuration configuration = new Configuration()
+                    .addAnnotatedClass(User.class)
+                    .addAnnotatedClass(UserChange.class)
+                    .addAnnotatedClass(EmailRoute.class);
+
+            configuration.setProperties(new Properties() {{
+                setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+                setProperty("hibernate.connection.username", postgres.getUsername());
+                setProperty("hibernate.connection.password", postgres.getPassword());
+            }});
+
+            sessionFactories.add(configuration.buildSessionFactory());
+        }
+
+        shardedUserDAO = new ShardedUserDAO(sessionFactories);
+    }
+
+    @BeforeEach
+    void resetDB() {
+        for (SessionFactory sessionFactory : sessionFactories) {
+            Session session = null;
+            Transaction transaction = null;
+
+            try {
+                session = sessionFactory.openSession();
+                transaction = session.beginTransaction();
+
+                session.createNativeQuery("truncate table users, user_changes, user_email_routes").executeUpdate();
+
+                transaction.commit();
+            } catch (Exception e) {
+                if (transaction != null && transaction.getStatus().isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            } finally {
+                if (session != null) {
+                    session.close();
+                }
+            }
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (shardedUserDAO != null) {
+            shardedUserDAO.close();
+        }
+    }
+
+    @Test
+    public void testSave_idBelongsToEmailShard() {
+        for (int i = 0; i < 10; i++) {
+            String email = "user" + i + "@ya.ru";
+            User user = shardedUserDAO.save(new User("name" + i, email, 20 + i));
+
+            assertEquals(shardedUserDAO.shardForEmail(email), shardedUserDAO.shardForId(user.getId()));
+        }
+    }
+
+    @Test
+    public void testReadById_whenOk() {
+        User user = shardedUserDAO.save(new User("name", "email@ya.ru", 30));
+
+        Optional<User> result = shardedUserDAO.readById(user.getId());
+
+        assertTrue(result.isPresent());
+        assertEquals(user, result.get());
+    }
+
+    @Test
+    public void testReadByEmail_afterEmailMovedToOtherShard() {
+        User user = shardedUserDAO.save(new User("name", "email@ya.ru", 30));
+        int shard = shardedUserDAO.shardForId(user.getId());
+        String movedEmail = emailOnOtherShard(shard);
+
+        user.setEmail(movedEmail);
+        shardedUserDAO.update(user);
+
+        Optional<User> result = shardedUserDAO.readByEmail(movedEmail);
+        assertTrue(result.isPresent());
+        assertEquals(user.getId(), result.get().getId());
+        assertTrue(shardedUserDAO.readByEmail("email@ya.ru").isEmpty());
+
+        shardedUserDAO.delete(user.getId());
+        assertTrue(shardedUserDAO.readByEmail(movedEmail).isEmpty());
+    }
+
+    @Test
+    public void testUpdate_whenUserIsNotUpdated_takesRouteBack() {
+        User user = shardedUserDAO.save(new User("name", "email@ya.ru", 30));
+        int shard = shardedUserDAO.shardForId(user.getId());
+        String movedEmail = emailOnOtherShard(shard);
+
+        assertThrows(RuntimeException.class,
+                () -> shardedUserDAO.update(new User(user.getId(), "a".repeat(257), movedEmail, 30)));
+
+        try (Session session = sessionFactories.get(shardedUserDAO.shardForEmail(movedEmail)).openSession()) {
+            assertNull(session.find(EmailRoute.class, movedEmail));
+        }
+        assertTrue(shardedUserDAO.readByEmail(movedEmail).isEmpty());
+        assertEquals(user, shardedUserDAO.readByEmail("email@ya.ru").orElseThrow());
+    }
+
+    @Test
+    public void testSaveAndUpdate_whenEmailIsRoutedFromOtherShard() {
+        User owner = shardedUserDAO.save(new User("owner", "email@ya.ru", 30));
+        int shard = shardedUserDAO.shardForId(owner.getId());
+        String movedEmail = emailOnOtherShard(shard);
+        int home = shardedUserDAO.shardForEmail(movedEmail);
+        owner.setEmail(movedEmail);
+        shardedUserDAO.update(owner);
+
+        assertThrows(EntityExistsException.class, () -> shardedUserDAO.save(new User("copy", movedEmail, 40)));
+        assertThrows(EntityExistsException.class,
+                () -> shardedUserDAO.saveAll(List.of(new User("copy", movedEmail, 40))));
+
+        User onHome = shardedUserDAO.save(new User("home", emailOnShard("home", home), 40));
+        assertThrows(EntityExistsException.class,
+                () -> shardedUserDAO.update(new User(onHome.getId(), "home", movedEmail, 40)));
+
+        // The route already points to this shard; the update fails on the shard's unique index and must not
+        // take the owner's route with it
+        User neighbour = shardedUserDAO.save(new User("neighbour", emailOnShard("local", shard), 40));
+        assertThrows(RuntimeException.class,
+                () -> shardedUserDAO.update(new User(neighbour.getId(), "neighbour", movedEmail, 40)));
+
+        assertEquals(owner.getId(), shardedUserDAO.readByEmail(movedEmail).orElseThrow().getId());
+        assertEquals(3, shardedUserDAO.readAll().size());
+    }
+
+    @Test
+    public void testReadAll_mergesShardsSortedById() {
+        for (int i = 0; i < 20; i++) {
+            shardedUserDAO.save(new User("name" + i, "user" + i + "@ya.ru", 20 + i));
+        }
+
+        List<User> result = shardedUserDAO.readAll();
+
+        assertEquals(20, result.size());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getId() < result.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testReadAll_whenNoUsersInDB() {
+        assertTrue(shardedUserDAO.readAll().isEmpty());
+    }
+
+    private static String emailOnShard(String prefix, int shard) {
+        for (int i = 0; ; i++) {
+            String email = prefix + i + "@ya.ru";
+            if (shardedUserDAO.shardForEmail(email) == shard) {
+                return email;
+            }
+        }
+    }
+
+    private static String emailOnOtherShard(int shard) {
+        for (int i = 0; ; i++) {
+            String email = "moved" + i + "@ya.ru";
+            if (shardedUserDAO.shardForEmail(email) != shard) {
+                return email;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import ru.practice.sql.SqlCallStats;
+import ru.practice.sql.SqlCallTracker;
+import ru.practice.sql.SqlInspector;
+import ru.practice.sql.SqlShapes;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlCallTrackerTest {
+
+    private final SqlInspector inspector = new SqlInspector();
+
+    @Test
+    public void testShape_collapsesParameterLists() {
+        assertEquals("select * from users where id in (?x3) and age > ?",
+                SqlShapes.shape("select *\n  from users where id in (?, ?,?) and age > ?"));
+    }
+
+    @Test
+    public void testMeasure_countsStatementsOfNestedCalls() {
+        SqlCallStats outer = SqlCallTracker.measure(() -> {
+            inspector.inspect("select 1");
+            SqlCallTracker.track("inner", 1, () -> {
+                inspector.inspect("select 2");
+                inspector.inspect("select 2");
+                return null;
+            });
+        });
+
+        assertEquals(3, outer.getStatementCount());
+        assertEquals(2, outer.countOf("select 2"));
+        assertEquals(List.of("select 1", "select 2", "select 2"), outer.getStatements());
+    }
+
+    @Test
+    public void testMeasure_countsSetupStatementsSeparately() {
+        SqlCallStats stats = SqlCallTracker.measure(() -> SqlCallTracker.track("with setup", 1, () -> {
+            inspector.inspect(SqlCallTracker.SETUP + "select set_config('lock_timeout', '100ms', true)");
+            return inspector.inspect("select 1");
+        }));
+
+        assertEquals(2, stats.getStatementCount());
+        assertEquals(1, stats.getSetupStatementCount());
+    }
+
+    @Test
+    public void testInspect_outsideOfCallsIsNotCounted() {
+        assertEquals("select 1", inspector.inspect("select 1"));
+
+        SqlCallStats stats = SqlCallTracker.measure(() -> {
+        });
+
+        assertEquals(0, stats.getStatementCount());
+    }
+
+    @Test
+    public void testTrack_returnsResultWhenOverBudget() {
+        String result = SqlCallTracker.track("over budget", 0, () -> inspector.inspect("select 1"));
+
+        assertEquals("select 1", result);
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practice;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.cache.CachingUserService;
+import ru.practice.cache.PgNotifyInvalidation;
+import ru.practice.cache.UserCache;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+import ru.practice.services.UserService;
+import ru.practice.services.UserServiceImpl;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class UserCacheInvalidationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static SessionFactory otherSessionFactory;
+
+    @BeforeAll
+    static void initHibernate() {
+        sessionFactory = buildSessionFactory();
+        otherSessionFactory = buildSessionFactory();
+    }
+
+    /**
+     * Each node of the test has a session factory, connection pool and cache of its own.
+     */
+    private static SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        return configuration.buildSessionFactory();
+    }
+
+    @AfterAll
+    static void closeHibernate() {
+        sessionFactory.close();
+        otherSessionFactory.close();
+    }
+
+    @BeforeEach
+    void resetDB() {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            session.createNativeQuery("truncate table users, user_changes").executeUpdate();
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateOnOneNode_evictsUserOnOtherNode() throws Exception {
+        UserCache cache = new UserCache(100, Duration.ofMinutes(5));
+        UserCache otherCache = new UserCache(100, Duration.ofMinutes(5));
+
+        try (PgNotifyInvalidation invalidation = new PgNotifyInvalidation(sessionFactory, cache);
+             PgNotifyInvalidation otherInvalidation = new PgNotifyInvalidation(otherSessionFactory, otherCache)) {
+            invalidation.start();
+            otherInvalidation.start();
+            UserService node = new CachingUserService(
+                    new UserServiceImpl(new UserDAOImpl(sessionFactory)), cache, invalidation);
+            UserService otherNode = new CachingUserService(
+                    new UserServiceImpl(new UserDAOImpl(otherSessionFactory)), otherCache, otherInvalidation);
+
+            User user = node.save(new User("name", "name@ya.ru", 30));
+            // Listeners drop the cache when they connect, wait until both are listening
+            waitUntil(() -> {
+                otherNode.read(user.getId());
+                return otherCache.size() == 1;
+            });
+            assertEquals(30, otherNode.readByEmail("Name@ya.ru").orElseThrow().getAge());
+
+            node.update(new User(user.getId(), "name", "name@ya.ru", 31));
+
+            waitUntil(() -> otherCache.size() == 0);
+            assertEquals(31, otherNode.read(user.getId()).orElseThrow().getAge());
+
+            node.delete(user.getId());
+
+            waitUntil(() -> otherCache.size() == 0);
+            assertEquals(Optional.empty(), otherNode.read(user.getId()));
+        }
+    }
+
+    private static void waitUntil(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.get()) {
+            assertTrue(System.nanoTime() < deadline, "Condition was not met in time");
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practice;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practice.cache.CachingUserService;
+import ru.practice.cache.PgNotifyInvalidation;
+import ru.practice.cache.UserCache;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserCacheTest {
+
+    @Mock
+    private UserService userService;
+
+    @Test
+    public void testGet_byIdAndEmail() {
+        UserCache cache = new UserCache(10, Duration.ofMinutes(1));
+        cache.put(new User(1, "name", "name@ya.ru", 30), cache.generation());
+
+        assertEquals("name", cache.get(1).orElseThrow().getName());
+        assertEquals(1, cache.getByEmail("name@ya.ru").orElseThrow().getId());
+        assertTrue(cache.getByEmail("other@ya.ru").isEmpty());
+    }
+
+    @Test
+    public void testPut_evictsLeastRecentlyUsed() {
+        UserCache cache = new UserCache(2, Duration.ofMinutes(1));
+        cache.put(new User(1, "a", "a@ya.ru", 1), cache.generation());
+        cache.put(new User(2, "b", "b@ya.ru", 2), cache.generation());
+        cache.get(1);
+        cache.put(new User(3, "c", "c@ya.ru", 3), cache.generation());
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(2).isEmpty());
+        assertTrue(cache.getByEmail("b@ya.ru").isEmpty());
+        assertTrue(cache.get(1).isPresent());
+    }
+
+    @Test
+    public void testPut_ignoresValueReadBeforeInvalidation() {
+        UserCache cache = new UserCache(10, Duration.ofMinutes(1));
+        long generation = cache.generation();
+
+        cache.invalidate(1);
+        cache.put(new User(1, "stale", "stale@ya.ru", 30), generation);
+
+        assertTrue(cache.get(1).isEmpty());
+    }
+
+    @Test
+    public void testPut_replacesEmailIndex() {
+        UserCache cache = new UserCache(10, Duration.ofMinutes(1));
+        cache.put(new User(1, "name", "old@ya.ru", 30), cache.generation());
+        cache.put(new User(1, "name", "new@ya.ru", 30), cache.generation());
+
+        assertTrue(cache.getByEmail("old@ya.ru").isEmpty());
+        assertTrue(cache.getByEmail("new@ya.ru").isPresent());
+    }
+
+    @Test
+    public void testGet_whenExpired() throws Exception {
+        UserCache cache = new UserCache(10, Duration.ofMillis(1));
+        cache.put(new User(1, "name", "name@ya.ru", 30), cache.generation());
+        Thread.sleep(5);
+
+        assertTrue(cache.get(1).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCachingService_readsThroughAndEvictsOnUpdate() {
+        User user = new User(1, "name", "name@ya.ru", 30);
+        when(userService.read(1)).thenReturn(Optional.of(user));
+        when(userService.update(user)).thenReturn(user);
+        CachingUserService cachingService = new CachingUserService(userService, new UserCache(10, Duration.ofMinutes(1)), null);
+
+        cachingService.read(1);
+        cachingService.read(1);
+        assertEquals(user, cachingService.readByEmail("Name@Ya.ru").orElseThrow());
+        verify(userService, times(1)).read(1);
+        verify(userService, never()).readByEmail(any());
+
+        cachingService.update(user);
+        cachingService.read(1);
+        verify(userService, times(2)).read(1);
+    }
+
+    @Test
+    public void testCachingService_doesNotCacheAbsentUsers() {
+        when(userService.read(2)).thenReturn(Optional.empty());
+        CachingUserService cachingService = new CachingUserService(userService, new UserCache(10, Duration.ofMinutes(1)), null);
+
+        cachingService.read(2);
+        cachingService.read(2);
+
+        verify(userService, times(2)).read(2);
+    }
+
+    @Test
+    public void testListener_reconnectsAfterRuntimeException() throws Exception {
+        ConnectionProvider connectionProvider = mock(ConnectionProvider.class);
+        when(connectionProvider.getConnection()).thenThrow(new IllegalStateException("Pool is broken"));
+        ServiceRegistryImplementor serviceRegistry = mock(ServiceRegistryImplementor.class);
+        when(serviceRegistry.requireService(ConnectionProvider.class)).thenReturn(connectionProvider);
+        SessionFactoryImplementor sessionFactory = mock(SessionFactoryImplementor.class);
+        when(sessionFactory.unwrap(SessionFactoryImplementor.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getServiceRegistry()).thenReturn(serviceRegistry);
+        UserCache cache = new UserCache(10, Duration.ofMinutes(1));
+
+        try (PgNotifyInvalidation invalidation = new PgNotifyInvalidation(sessionFactory, cache)) {
+            invalidation.start();
+
+            verify(connectionProvider, timeout(5000).atLeast(2)).getConnection();
+            assertTrue(cache.generation() >= 1);
+        }
+    }
+}
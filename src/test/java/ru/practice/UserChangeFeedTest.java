@@ -0,0 +1,190 @@
+package ru.practice;
+
+import jakarta.persistence.LockModeType;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.UserChangeFeed;
+import ru.practice.dao.UserChangeFeedImpl;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class UserChangeFeedTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static UserDAOImpl userDAOImpl;
+    private static UserChangeFeed userChangeFeed;
+
+    @BeforeAll
+    static void initHibernate() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        sessionFactory = configuration.buildSessionFactory();
+        userDAOImpl = new UserDAOImpl(sessionFactory);
+        userChangeFeed = new UserChangeFeedImpl(sessionFactory);
+    }
+
+    @BeforeEach
+    void resetDB() {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            session.createNativeQuery("truncate table users, user_changes").executeUpdate();
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    public void testReadAfter_recordsEveryMutation() {
+        User user = userDAOImpl.save(new User("name", "email@ya.ru", 30));
+        user.setAge(31);
+        userDAOImpl.update(user);
+        userDAOImpl.delete(user.getId());
+
+        List<UserChange> changes = userChangeFeed.readAfter(0, 10);
+
+        assertEquals(3, changes.size());
+        assertEquals(UserChange.Operation.CREATED, changes.get(0).getOperation());
+        assertEquals(UserChange.Operation.UPDATED, changes.get(1).getOperation());
+        assertEquals(UserChange.Operation.DELETED, changes.get(2).getOperation());
+        changes.forEach(change -> assertEquals(user.getId(), change.getUserId()));
+    }
+
+    @Test
+    public void testReadAfter_whenSaveFails_noChangeRecorded() {
+        userDAOImpl.save(new User("name", "email@ya.ru", 30));
+
+        assertThrows(Exception.class, () -> userDAOImpl.save(new User("name", "email@ya.ru", 30)));
+
+        assertEquals(1, userChangeFeed.readAfter(0, 10).size());
+    }
+
+    @Test
+    public void testStreamAfter_deliversOnlyNewChangesInBatches() {
+        for (int i = 0; i < 5; i++) {
+            userDAOImpl.save(new User("name" + i, "email" + i + "@ya.ru", 30));
+        }
+        long cursor = userChangeFeed.streamAfter(0, 2, batch -> { });
+
+        for (int i = 5; i < 12; i++) {
+            userDAOImpl.save(new User("name" + i, "email" + i + "@ya.ru", 30));
+        }
+        List<Integer> batchSizes = new ArrayList<>();
+        long newCursor = userChangeFeed.streamAfter(cursor, 3, batch -> batchSizes.add(batch.size()));
+
+        assertEquals(List.of(3, 3, 1), batchSizes);
+        assertTrue(newCursor > cursor);
+        assertTrue(userChangeFeed.readAfter(newCursor, 10).isEmpty());
+    }
+
+    @Test
+    public void testReadAfter_holdsBackChangesUntilEarlierTransactionsEnd() {
+        User slowUser = userDAOImpl.save(new User("slow", "slow@ya.ru", 30));
+        User fastUser = userDAOImpl.save(new User("fast", "fast@ya.ru", 30));
+        long cursor = userChangeFeed.streamAfter(0, 10, batch -> { });
+
+        try (Session slow = sessionFactory.openSession(); Session fast = sessionFactory.openSession()) {
+            Transaction slowTransaction = slow.beginTransaction();
+            slow.find(User.class, slowUser.getId(), LockModeType.PESSIMISTIC_WRITE).setAge(31);
+            slow.persist(new UserChange(slowUser.getId(), UserChange.Operation.UPDATED));
+
+            Transaction fastTransaction = fast.beginTransaction();
+            fast.find(User.class, fastUser.getId(), LockModeType.PESSIMISTIC_WRITE).setAge(31);
+            fast.persist(new UserChange(fastUser.getId(), UserChange.Operation.UPDATED));
+            fastTransaction.commit();
+
+            // The fast change is committed, but its id comes after the change of the running slow transaction
+            assertTrue(userChangeFeed.readAfter(cursor, 10).isEmpty());
+            assertEquals(cursor, userChangeFeed.streamAfter(cursor, 10, batch -> { }));
+            assertEquals(cursor, userChangeFeed.readHead());
+
+            slowTransaction.commit();
+        }
+
+        List<UserChange> changes = userChangeFeed.readAfter(cursor, 10);
+        assertEquals(List.of(slowUser.getId(), fastUser.getId()),
+                changes.stream().map(UserChange::getUserId).collect(Collectors.toList()));
+        assertEquals(changes.get(1).getId(), userChangeFeed.readHead());
+    }
+
+    @Test
+    public void testCompact_keepsLatestChangePerUser() {
+        User user = userDAOImpl.save(new User("name", "email@ya.ru", 30));
+        user.setAge(31);
+        userDAOImpl.update(user);
+        user.setAge(32);
+        userDAOImpl.update(user);
+        long cursor = userChangeFeed.streamAfter(0, 10, batch -> { });
+
+        int removed = userChangeFeed.compact(cursor);
+
+        List<UserChange> changes = userChangeFeed.readAfter(0, 10);
+        assertEquals(2, removed);
+        assertEquals(1, changes.size());
+        assertEquals(cursor, changes.get(0).getId());
+    }
+
+    @Test
+    public void testPurgeBefore_removesOldChangesButKeepsHead() {
+        userDAOImpl.save(new User("name", "email@ya.ru", 30));
+        userDAOImpl.save(new User("other", "other@ya.ru", 31));
+        long head = userChangeFeed.readHead();
+
+        int removed = userChangeFeed.purgeBefore(LocalDateTime.now().plusMinutes(1));
+
+        assertEquals(1, removed);
+        assertEquals(head, userChangeFeed.readHead());
+        assertEquals(head, userChangeFeed.readTail());
+        assertEquals(1, userChangeFeed.readAfter(0, 10).size());
+    }
+}
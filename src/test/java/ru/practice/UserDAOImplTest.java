@@ -10,9 +10,14 @@ import org.junit.jupiter.api.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.Deadline;
+import ru.practice.dao.DeadlineExceededException;
+import ru.practice.dao.QueryTimeouts;
 import ru.practice.dao.UserDAOImpl;
 import ru.practice.models.User;
+import ru.practice.models.UserChange;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
@@ -35,7 +40,8 @@ public class UserDAOImplTest {
     @BeforeAll
     static void initHibernate() {
         Configuration configuration = new Configuration()
-                .addAnnotatedClass(User.class);
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
 
         configuration.setProperties(new Properties() {{
             setProperty("hibernate.connection.url", postgres.getJdbcUrl());
@@ -60,7 +66,7 @@ public class UserDAOImplTest {
             session = sessionFactory.openSession();
             transaction = session.beginTransaction();
 
-            session.createNativeQuery("truncate table users "
+            session.createNativeQuery("truncate table users, user_changes "
             ).executeUpdate();
 
             transaction.commit();
@@ -198,6 +204,18 @@ public class UserDAOImplTest {
         assertThrows(NullPointerException.class, () -> userDAOImpl.readByEmail(email));
     }
 
+    @Test
+    public void testReadByEmails_whenOk() {
+        User user1 = userDAOImpl.save(new User("name1", "email1", 20));
+        User user2 = userDAOImpl.save(new User("name2", "email2", 30));
+        userDAOImpl.save(new User("name3", "email3", 40));
+
+        List<User> result = userDAOImpl.readByEmails(List.of("email2", "missing", "email1"));
+
+        assertEquals(List.of(user1, user2), result);
+        assertTrue(userDAOImpl.readByEmails(List.of()).isEmpty());
+    }
+
     @Test
     public void testUpdate_whenOk() {
         User user = new User("name1", "email1", 78);
@@ -249,4 +267,49 @@ public class UserDAOImplTest {
     public void testDelete_whenNoSuchUser() {
         assertThrows(IllegalArgumentException.class, () -> userDAOImpl.delete(0));
     }
+
+    @Test
+    public void testUpdate_whenRowIsLockedLongerThanDeadline() {
+        User user = userDAOImpl.save(new User("locked", "locked@ya.ru", 30));
+
+        try (Session locker = sessionFactory.openSession()) {
+            Transaction lock = locker.beginTransaction();
+            locker.createNativeQuery("select id from users where id = :id for update", Integer.class)
+                    .setParameter("id", user.getId())
+                    .getSingleResult();
+
+            long startNanos = System.nanoTime();
+            assertThrows(DeadlineExceededException.class, () -> Deadline.within(Duration.ofMillis(300),
+                    () -> userDAOImpl.update(new User(user.getId(), "changed", "locked@ya.ru", 31))));
+            assertTrue(System.nanoTime() - startNanos < Duration.ofSeconds(2).toNanos());
+
+            lock.rollback();
+        }
+
+        assertEquals("locked", userDAOImpl.readById(user.getId()).get().getName());
+        assertEquals(1, userDAOImpl.getTimeoutCount());
+    }
+
+    @Test
+    public void testReadAll_whenStatementTimesOut() {
+        UserDAOImpl impatientDAO = new UserDAOImpl(sessionFactory,
+                new QueryTimeouts(Duration.ofSeconds(5), Duration.ofMillis(200), Duration.ofSeconds(5)));
+
+        try (Session sleeper = sessionFactory.openSession()) {
+            Transaction lock = sleeper.beginTransaction();
+            sleeper.createNativeMutationQuery("lock table users in access exclusive mode").executeUpdate();
+
+            assertThrows(DeadlineExceededException.class, impatientDAO::readAll);
+
+            lock.rollback();
+        }
+
+        assertTrue(impatientDAO.readAll().isEmpty());
+    }
+
+    @Test
+    public void testReadById_whenDeadlineAlreadyExpired() {
+        assertThrows(DeadlineExceededException.class,
+                () -> Deadline.within(Duration.ZERO, () -> userDAOImpl.readById(1)));
+    }
 }
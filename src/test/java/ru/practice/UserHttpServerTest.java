@@ -0,0 +1,213 @@
+package ru.practice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practice.dao.OverloadException;
+import ru.practice.http.UserHttpServer;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserHttpServerTest {
+
+    @Mock
+    private UserService userService;
+
+    private UserHttpServer server;
+    private HttpClient client;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new UserHttpServer(userService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://127.0.0.1:" + server.getPort() + "/users";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testRead_whenOk() throws Exception {
+        User user = new User(1, "Ann \"A\"", "a@ya.ru", 20);
+        user.setCreatedAt(null);
+        when(userService.read(1)).thenReturn(Optional.of(user));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/1")).GET());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"id\":1,\"name\":\"Ann \\\"A\\\"\",\"email\":\"a@ya.ru\",\"age\":20,\"createdAt\":null}",
+                response.body());
+    }
+
+    @Test
+    public void testRead_whenNoUser() throws Exception {
+        when(userService.read(2)).thenReturn(Optional.empty());
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/2")).GET());
+
+        assertEquals(404, response.statusCode());
+    }
+
+    @Test
+    public void testCreate_parsesBody() throws Exception {
+        when(userService.save(any())).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            user.setId(7);
+            return user;
+        });
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Bob\\n\", \"email\":\"b@ya.ru\", \"age\": 31}")));
+
+        assertEquals(201, response.statusCode());
+        assertTrue(response.body().startsWith("{\"id\":7,\"name\":\"Bob\\n\",\"email\":\"b@ya.ru\",\"age\":31"));
+        verify(userService).save(argThat(user -> user.getName().equals("Bob\n") && user.getAge() == 31));
+    }
+
+    @Test
+    public void testCreate_whenBodyIsInvalid() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Bob\", \"age\": \"old\"}")));
+
+        assertEquals(400, response.statusCode());
+        verify(userService, never()).save(any());
+    }
+
+    @Test
+    public void testUpdate_whenUserDoesNotExist() throws Exception {
+        when(userService.update(any())).thenThrow(new NoSuchElementException("User not exist"));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/3"))
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"name\":\"Bob\",\"email\":\"b@ya.ru\",\"age\":31}")));
+
+        assertEquals(404, response.statusCode());
+        assertEquals("{\"error\":\"User not exist\"}", response.body());
+    }
+
+    @Test
+    public void testRead_whenOverloaded() throws Exception {
+        when(userService.read(5)).thenThrow(new OverloadException("reads: queue is full (0 waiting)"));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/5")).GET());
+
+        assertEquals(503, response.statusCode());
+        assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+    }
+
+    @Test
+    public void testDelete_whenOk() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/4")).DELETE());
+
+        assertEquals(204, response.statusCode());
+        verify(userService).delete(4);
+    }
+
+    @Test
+    public void testList_pageAndMultiGet() throws Exception {
+        when(userService.readPage(10, 2)).thenReturn(List.of(new User(11, "a", "a@ya.ru", 1), new User(12, "b", "b@ya.ru", 2)));
+        when(userService.readByIds(List.of(11, 12))).thenReturn(List.of(new User(11, "a", "a@ya.ru", 1)));
+
+        HttpResponse<String> page = send(HttpRequest.newBuilder(URI.create(baseUrl + "?after=10&limit=2")).GET());
+        HttpResponse<String> multiGet = send(HttpRequest.newBuilder(URI.create(baseUrl + "?ids=11,12")).GET());
+
+        assertEquals(200, page.statusCode());
+        assertTrue(page.body().endsWith(",\"next\":12}"));
+        assertEquals(200, multiGet.statusCode());
+        assertTrue(multiGet.body().startsWith("[{\"id\":11,"));
+    }
+
+    @Test
+    public void testStreamAll_readsEveryPage() throws Exception {
+        when(userService.readPage(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int after = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            List<User> page = new ArrayList<>();
+            for (int id = after + 1; id <= Math.min(after + limit, 2500); id++) {
+                page.add(new User(id, "u", "u" + id + "@ya.ru", 1));
+            }
+            return page;
+        });
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/all")).GET());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("[{\"id\":1,"));
+        assertTrue(response.body().contains("{\"id\":2500,"));
+        assertTrue(response.body().endsWith("}]"));
+        verify(userService, times(3)).readPage(anyInt(), anyInt());
+    }
+
+    @Test
+    public void testStreamAll_whenFirstPageIsOverloaded() throws Exception {
+        when(userService.readPage(anyInt(), anyInt())).thenThrow(new OverloadException("Too many requests"));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/all")).GET());
+
+        assertEquals(503, response.statusCode());
+    }
+
+    @Test
+    public void testStreamAll_whenLaterPageFails() throws Exception {
+        List<User> firstPage = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            firstPage.add(new User(id, "u", "u" + id + "@ya.ru", 1));
+        }
+        when(userService.readPage(0, 1000)).thenReturn(firstPage);
+        when(userService.readPage(1000, 1000)).thenThrow(new IllegalStateException("Connection lost"));
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/all")).GET());
+
+        assertEquals(200, response.statusCode());
+        assertFalse(response.body().endsWith("]"));
+        assertFalse(response.body().contains("error"));
+    }
+
+    @Test
+    public void testCreate_whenAgeIsOutOfRange() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Bob\", \"email\":\"b@ya.ru\", \"age\": 3000000000}")));
+
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Field age is out of range\"}", response.body());
+        verify(userService, never()).save(any());
+    }
+
+    @Test
+    public void testCreate_whenBodyIsTooLarge() throws Exception {
+        when(userService.read(1)).thenReturn(Optional.empty());
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"" + "a".repeat(100_000) + "\"}")));
+
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Request body is too large\"}", response.body());
+        assertEquals(404, send(HttpRequest.newBuilder(URI.create(baseUrl + "/1")).GET()).statusCode());
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,200 @@
+package ru.practice;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.SchemaToolingSettings;
+import org.hibernate.tool.schema.UniqueConstraintSchemaUpdateStrategy;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.EmailNormalization;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.dao.UserPartitions;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class UserPartitionsTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static final YearMonth CURRENT = YearMonth.now();
+    private static final YearMonth OLD = CURRENT.minusMonths(2);
+
+    private static SessionFactory sessionFactory;
+    private static UserDAOImpl userDAOImpl;
+    private static UserPartitions userPartitions;
+    private static User oldUser;
+
+    @BeforeAll
+    static void initHibernate() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        sessionFactory = configuration.buildSessionFactory();
+        userDAOImpl = new UserDAOImpl(sessionFactory);
+        userPartitions = new UserPartitions(sessionFactory, 2);
+
+        oldUser = new User("old", "old@ya.ru", 40);
+        oldUser.setCreatedAt(OLD.atDay(10).atStartOfDay());
+        userDAOImpl.saveAll(List.of(oldUser, new User("recent", "recent@ya.ru", 20)));
+
+        userPartitions.install();
+    }
+
+    @AfterAll
+    static void closeHibernate() {
+        sessionFactory.close();
+    }
+
+    @Test
+    @Order(1)
+    public void testInstall_keepsUsersAndCreatesPartitions() {
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals("p", session.createNativeQuery(
+                    "select relkind::text from pg_class where relname = 'users'", String.class).getSingleResult());
+        }
+
+        assertEquals(2, userDAOImpl.readAll().size());
+        assertEquals("old", userDAOImpl.readById(oldUser.getId()).orElseThrow().getName());
+        assertEquals(List.of("users_p" + OLD.toString().replace('-', '_'),
+                        "users_p" + OLD.plusMonths(1).toString().replace('-', '_'),
+                        "users_p" + CURRENT.toString().replace('-', '_'),
+                        "users_p" + CURRENT.plusMonths(1).toString().replace('-', '_'),
+                        "users_p" + CURRENT.plusMonths(2).toString().replace('-', '_')),
+                userPartitions.listPartitions());
+    }
+
+    @Test
+    @Order(2)
+    public void testDao_worksOnPartitionedTable() {
+        User user = userDAOImpl.save(new User("new", "new@ya.ru", 30));
+
+        assertTrue(user.getId() > oldUser.getId());
+        assertEquals(user.getId(), userDAOImpl.readByEmail("new@ya.ru").orElseThrow().getId());
+        assertThrows(RuntimeException.class, () -> userDAOImpl.save(new User("copy", "new@ya.ru", 30)));
+
+        userDAOImpl.update(new User(user.getId(), "new", "renamed@ya.ru", 31));
+        userDAOImpl.save(new User("other", "new@ya.ru", 30));
+        assertThrows(RuntimeException.class, () -> userDAOImpl.save(new User("copy", "renamed@ya.ru", 30)));
+
+        userDAOImpl.delete(user.getId());
+        assertTrue(userDAOImpl.readById(user.getId()).isEmpty());
+        userDAOImpl.save(new User("reused", "renamed@ya.ru", 30));
+    }
+
+    @Test
+    @Order(3)
+    public void testTimeFilter_readsOnlyMatchingPartitions() {
+        try (Session session = sessionFactory.openSession()) {
+            List<String> plan = session.createNativeQuery(
+                            "explain select count(*) from users where created_at >= :from", String.class)
+                    .setParameter("from", CURRENT.atDay(1).atStartOfDay())
+                    .getResultList();
+            String text = String.join("\n", plan);
+
+            assertTrue(text.contains("users_p" + CURRENT.toString().replace('-', '_')), text);
+            assertFalse(text.contains("users_p" + OLD.toString().replace('-', '_')), text);
+        }
+    }
+
+    @Test
+    @Order(4)
+    public void testDetachOlderThan_archivesOldMonths() {
+        List<String> detached = userPartitions.detachOlderThan(CURRENT);
+
+        assertEquals(List.of("users_p" + OLD.toString().replace('-', '_'),
+                "users_p" + OLD.plusMonths(1).toString().replace('-', '_')), detached);
+        assertTrue(userDAOImpl.readById(oldUser.getId()).isEmpty());
+        userDAOImpl.save(new User("old again", "old@ya.ru", 41));
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(1L, session.createNativeQuery("select count(*) from " + detached.get(0), Long.class)
+                    .getSingleResult());
+        }
+    }
+
+    @Test
+    @Order(5)
+    public void testInstall_whenAlreadyPartitioned() {
+        userPartitions.install();
+
+        assertEquals("users_p" + CURRENT.toString().replace('-', '_'), userPartitions.listPartitions().get(0));
+    }
+
+    @Test
+    @Order(6)
+    public void testEnsurePartitions_movesRowsOutOfDefaultPartition() {
+        YearMonth earlyMonth = CURRENT.plusMonths(4);
+        User early = new User("early", "early@ya.ru", 25);
+        early.setCreatedAt(earlyMonth.atDay(3).atStartOfDay());
+        userDAOImpl.save(early);
+
+        List<YearMonth> blocked = new UserPartitions(sessionFactory, 5).ensurePartitions();
+
+        assertTrue(blocked.isEmpty());
+        List<String> partitions = userPartitions.listPartitions();
+        assertTrue(partitions.contains("users_p" + CURRENT.plusMonths(3).toString().replace('-', '_')));
+        assertTrue(partitions.contains("users_p" + CURRENT.plusMonths(5).toString().replace('-', '_')));
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(1L, session.createNativeQuery("select count(*) from users_p"
+                    + earlyMonth.toString().replace('-', '_'), Long.class).getSingleResult());
+            assertEquals(0L, session.createNativeQuery("select count(*) from users_default", Long.class)
+                    .getSingleResult());
+        }
+        assertEquals("early", userDAOImpl.readById(early.getId()).orElseThrow().getName());
+        assertThrows(RuntimeException.class, () -> userDAOImpl.save(new User("copy", "early@ya.ru", 25)));
+    }
+
+    @Test
+    @Order(7)
+    public void testRestart_onPartitionedSchema() {
+        // The same setup App runs on start in partitioned mode, against the schema the tests above left behind
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+            setProperty("hibernate.hbm2ddl.auto", "update");
+            setProperty(SchemaToolingSettings.UNIQUE_CONSTRAINT_SCHEMA_UPDATE_STRATEGY,
+                    UniqueConstraintSchemaUpdateStrategy.SKIP.name());
+        }});
+
+        try (SessionFactory restarted = configuration.buildSessionFactory()) {
+            new UserPartitions(restarted, 3).install();
+            new EmailNormalization(restarted).install();
+
+            UserDAOImpl restartedDAO = new UserDAOImpl(restarted);
+            User user = restartedDAO.save(new User("restarted", "restarted@ya.ru", 33));
+            assertEquals(user.getId(), restartedDAO.readByEmail("restarted@ya.ru").orElseThrow().getId());
+            assertThrows(RuntimeException.class, () -> restartedDAO.save(new User("copy", "restarted@ya.ru", 33)));
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals("p", session.createNativeQuery(
+                    "select relkind::text from pg_class where relname = 'users'", String.class).getSingleResult());
+        }
+    }
+}
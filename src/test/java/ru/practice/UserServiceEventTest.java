@@ -0,0 +1,83 @@
+package ru.practice;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.jfr.UserServiceEvent;
+import ru.practice.models.User;
+import ru.practice.services.UserServiceImpl;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserServiceEventTest {
+
+    @Mock
+    private UserDAOImpl userDAOImpl;
+
+    @InjectMocks
+    private UserServiceImpl userServiceImpl;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testServiceOperations_areRecorded() throws Exception {
+        when(userDAOImpl.readById(1)).thenReturn(Optional.of(new User(1, "name", "name@ya.ru", 30)));
+        when(userDAOImpl.readByEmail("name@ya.ru")).thenReturn(Optional.empty());
+        when(userDAOImpl.update(any())).thenThrow(new NoSuchElementException("User not exist"));
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(UserServiceEvent.class).withoutThreshold();
+            recording.start();
+
+            userServiceImpl.read(1);
+            assertThrows(NoSuchElementException.class, () -> userServiceImpl.update(new User(2, "name", "name@ya.ru", 30)));
+
+            recording.stop();
+            Path file = tempDir.resolve("users.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals("ru.practice.UserService"))
+                    .collect(Collectors.toList());
+        }
+
+        assertEquals(2, events.size());
+        assertEquals("read", events.get(0).getString("operation"));
+        assertEquals(1, events.get(0).getInt("userId"));
+        assertEquals(1, events.get(0).getInt("rows"));
+        assertFalse(events.get(0).getBoolean("failed"));
+        assertEquals("update", events.get(1).getString("operation"));
+        assertTrue(events.get(1).getBoolean("failed"));
+    }
+
+    @Test
+    public void testConfiguration_enablesUserEvents() throws Exception {
+        try (Reader reader = new InputStreamReader(
+                getClass().getResourceAsStream("/users.jfc"), StandardCharsets.UTF_8)) {
+            Configuration configuration = Configuration.create(reader);
+
+            assertEquals("true", configuration.getSettings().get("ru.practice.UserService#enabled"));
+            assertEquals("true", configuration.getSettings().get("ru.practice.UserDAO#enabled"));
+        }
+    }
+}
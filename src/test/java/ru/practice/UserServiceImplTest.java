@@ -15,6 +15,7 @@ import ru.practice.services.UserServiceImpl;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 
@@ -109,12 +110,103 @@ public class UserServiceImplTest {
         verify(userDAOImpl, times(0)).save(user);
     }
 
+    @Test
+    public void testSave_normalizesEmail() {
+        User user = new User("test", "  Test.User@Ya.RU ", 30);
+
+        when(userDAOImpl.readByEmail("test.user@ya.ru")).thenReturn(Optional.empty());
+        when(userDAOImpl.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User saved = userServiceImpl.save(user);
+
+        assertEquals("test.user@ya.ru", saved.getEmail());
+        assertEquals("  Test.User@Ya.RU ", user.getEmail());
+        verify(userDAOImpl).save(argThat(written -> written.getEmail().equals("test.user@ya.ru")));
+    }
+
+    @Test
+    public void testSave_whenEmailDiffersOnlyInCase() {
+        User user = new User("test", "TEST2@ya.ru", 30);
+
+        when(userDAOImpl.readByEmail("test2@ya.ru")).thenReturn(Optional.of(new User(5, "test2", "test2@ya.ru", 28)));
+
+        assertThrows(IllegalArgumentException.class, () -> userServiceImpl.save(user));
+        verify(userDAOImpl, times(0)).save(any());
+    }
+
+    @Test
+    public void testSaveAll_whenUsersAreValid() {
+        List<User> users = List.of(
+                new User("test1", "test1@ya.ru", 12),
+                new User("test2", "test2@ya.ru", 28));
+
+        when(userDAOImpl.readByEmails(anyCollection())).thenReturn(List.of());
+        when(userDAOImpl.saveAll(users)).thenReturn(users);
+
+        List<User> result = userServiceImpl.saveAll(users);
+
+        assertEquals(users, result);
+        verify(userDAOImpl, times(1)).saveAll(users);
+        verify(userDAOImpl, times(1)).readByEmails(anyCollection());
+        verify(userDAOImpl, never()).readByEmail(anyString());
+    }
+
+    @Test
+    public void testSaveAll_whenEmailIsTaken() {
+        List<User> users = List.of(
+                new User("test1", "test1@ya.ru", 12),
+                new User("test2", "test2@ya.ru", 28),
+                new User("test3", "test3@ya.ru", 35));
+
+        when(userDAOImpl.readByEmails(Set.of("test1@ya.ru", "test2@ya.ru", "test3@ya.ru")))
+                .thenReturn(List.of(new User(5, "other", "test2@ya.ru", 40)));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> userServiceImpl.saveAll(users));
+        assertEquals("1 of 3 users are invalid, user 2: This email is already taken.", e.getMessage());
+        verify(userDAOImpl, times(0)).saveAll(any());
+    }
+
+    @Test
+    public void testSaveAll_whenOneUserIsNotValid() {
+        List<User> users = List.of(
+                new User("test1", "test1@ya.ru", 12),
+                new User("test2", "test2@ya.ru", 130));
+
+        when(userDAOImpl.readByEmails(anyCollection())).thenReturn(List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> userServiceImpl.saveAll(users));
+        verify(userDAOImpl, times(0)).saveAll(users);
+    }
+
+    @Test
+    public void testSave_whenNameIsNull() {
+        User user = new User(null, "test@ya.ru", 30);
+
+        when(userDAOImpl.readByEmail("test@ya.ru")).thenReturn(Optional.empty());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> userServiceImpl.save(user));
+        assertEquals("Name length should be between 1 and 256 characters.", e.getMessage());
+        verify(userDAOImpl, times(0)).save(any());
+    }
+
+    @Test
+    public void testSaveAll_whenEmailRepeatsInBatch() {
+        List<User> users = List.of(
+                new User("test1", "test1@ya.ru", 12),
+                new User("test2", "Test1@ya.ru", 28));
+
+        when(userDAOImpl.readByEmails(anyCollection())).thenReturn(List.of());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> userServiceImpl.saveAll(users));
+        assertEquals("1 of 2 users are invalid, user 2: This email occurs more than once in the batch.", e.getMessage());
+        verify(userDAOImpl, times(0)).saveAll(any());
+    }
+
     @ParameterizedTest
     @MethodSource("provideValidFieldForObjectUser")
     public void testUpdate_whenUserIsValid(int id, String name, String email, int age) {
         User user = new User(id, name, email, age);
 
-        when(userDAOImpl.readById(id)).thenReturn(Optional.of(user));
         when(userDAOImpl.update(user)).thenReturn(user);
 
         userServiceImpl.update(user);
@@ -127,10 +219,10 @@ public class UserServiceImplTest {
     public void testUpdate_whenUserDoesNotExist(int id, String name, String email, int age) {
         User user = new User(id, name, email, age);
 
-        when(userDAOImpl.readById(id)).thenReturn(Optional.empty());
+        when(userDAOImpl.update(user)).thenThrow(new NoSuchElementException("User not exist"));
 
         assertThrows(NoSuchElementException.class, () -> userServiceImpl.update(user));
-        verify(userDAOImpl, times(0)).update(user);
+        verify(userDAOImpl, never()).readById(id);
     }
 
     @ParameterizedTest
@@ -141,7 +233,6 @@ public class UserServiceImplTest {
         Optional<User> emailDuplicationCondition =
                 email.equals("test2@ya.ru") ? Optional.of(foundUser) : Optional.empty();
 
-        when(userDAOImpl.readById(id)).thenReturn(Optional.of(user));
         when(userDAOImpl.readByEmail(email)).thenReturn(emailDuplicationCondition);
 
         assertThrows(IllegalArgumentException.class, () -> userServiceImpl.update(user));
@@ -0,0 +1,139 @@
+package ru.practice;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+import ru.practice.services.UserService;
+import ru.practice.services.UserServiceImpl;
+import ru.practice.sql.SqlCallStats;
+import ru.practice.sql.SqlCallTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class UserServiceStatementCountTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static UserService userService;
+
+    @BeforeAll
+    static void initHibernate() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        sessionFactory = configuration.buildSessionFactory();
+        userService = new UserServiceImpl(new UserDAOImpl(sessionFactory));
+    }
+
+    @BeforeEach
+    void resetDB() {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            session.createNativeQuery("truncate table users, user_changes").executeUpdate();
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    public void testRead_isOneStatement() {
+        User user = userService.save(new User("name", "name@ya.ru", 30));
+
+        SqlCallStats stats = SqlCallTracker.measure(() -> userService.read(user.getId()));
+
+        assertEquals(1, stats.getStatementCount());
+    }
+
+    @Test
+    public void testSave_statementCount() {
+        SqlCallStats stats = SqlCallTracker.measure(() -> userService.save(new User("name", "name@ya.ru", 30)));
+
+        // email check, user insert, change log insert
+        assertTrue(stats.getStatementCount() <= 3, stats.getStatements().toString());
+    }
+
+    @Test
+    public void testUpdate_statementCount() {
+        User user = userService.save(new User("name", "name@ya.ru", 30));
+
+        SqlCallStats stats = SqlCallTracker.measure(
+                () -> userService.update(new User(user.getId(), "other", "name@ya.ru", 31)));
+
+        // email check, load, update, change log insert
+        assertTrue(stats.getStatementCount() <= 4, stats.getStatements().toString());
+    }
+
+    @Test
+    public void testSaveAll_statementCountDoesNotGrowWithBatch() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(new User("name" + i, "name" + i + "@ya.ru", 30));
+        }
+
+        SqlCallStats stats = SqlCallTracker.measure(() -> userService.saveAll(users));
+
+        // email check of the whole batch, one insert of users and change log rows
+        assertEquals(2, stats.getStatementCount(), stats.getStatements().toString());
+        List<User> saved = userService.readByIds(List.of(users.get(0).getId(), users.get(49).getId()));
+        assertEquals(List.of("name0@ya.ru", "name49@ya.ru"), List.of(saved.get(0).getEmail(), saved.get(1).getEmail()));
+    }
+
+    @Test
+    public void testReadByIds_isOneStatementForManyIds() {
+        List<User> users = userService.saveAll(List.of(
+                new User("a", "a@ya.ru", 1),
+                new User("b", "b@ya.ru", 2),
+                new User("c", "c@ya.ru", 3)));
+
+        SqlCallStats stats = SqlCallTracker.measure(() -> userService.readByIds(
+                List.of(users.get(0).getId(), users.get(1).getId(), users.get(2).getId())));
+
+        assertEquals(1, stats.getStatementCount());
+    }
+}
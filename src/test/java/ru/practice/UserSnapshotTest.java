@@ -0,0 +1,191 @@
+package ru.practice;
+
+import jakarta.persistence.LockModeType;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.UserChangeFeed;
+import ru.practice.dao.UserChangeFeedImpl;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+import ru.practice.snapshot.UserSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class UserSnapshotTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static UserDAOImpl userDAOImpl;
+    private static UserChangeFeed userChangeFeed;
+    private UserSnapshot userSnapshot;
+
+    @BeforeAll
+    static void initHibernate() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        sessionFactory = configuration.buildSessionFactory();
+        userDAOImpl = new UserDAOImpl(sessionFactory);
+        userChangeFeed = new UserChangeFeedImpl(sessionFactory);
+    }
+
+    @BeforeEach
+    void resetDB() {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            session.createNativeQuery("truncate table users, user_changes").executeUpdate();
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @BeforeEach
+    void initSnapshot() {
+        userSnapshot = new UserSnapshot(sessionFactory, userChangeFeed);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    public void testLoad_whenOk() {
+        userDAOImpl.saveAll(List.of(
+                new User("Anna", "anna@ya.ru", 25),
+                new User("Andrey", "andrey@ya.ru", 35),
+                new User("Boris", "boris@ya.ru", 41)));
+
+        userSnapshot.load();
+
+        assertEquals(3, userSnapshot.size());
+        assertEquals(2, userSnapshot.countByNamePrefix("An"));
+        assertEquals(2, userSnapshot.countByAgeBetween(30, 45));
+        assertArrayEquals(new long[]{0, 0, 1, 1, 1}, userSnapshot.ageHistogram(10));
+
+        IntSummaryStatistics ages = userSnapshot.ageStatistics();
+        assertEquals(25, ages.getMin());
+        assertEquals(41, ages.getMax());
+    }
+
+    @Test
+    public void testGet_returnsSameUserAsDatabase() {
+        User saved = userDAOImpl.save(new User("Vera", "vera@ya.ru", 30));
+        userSnapshot.load();
+
+        User fromSnapshot = userSnapshot.get(saved.getId()).get();
+        User fromDatabase = userDAOImpl.readById(saved.getId()).get();
+
+        assertEquals(fromDatabase, fromSnapshot);
+        assertEquals(fromDatabase.getAge(), fromSnapshot.getAge());
+        assertTrue(userSnapshot.get(saved.getId() + 1).isEmpty());
+    }
+
+    @Test
+    public void testRefresh_appliesChangesSinceLoad() {
+        User updated = userDAOImpl.save(new User("Ivan", "ivan@ya.ru", 20));
+        User deleted = userDAOImpl.save(new User("Petr", "petr@ya.ru", 21));
+        userSnapshot.load();
+
+        updated.setName("Ilya");
+        userDAOImpl.update(updated);
+        userDAOImpl.delete(deleted.getId());
+        User created = userDAOImpl.save(new User("Irina", "irina@ya.ru", 22));
+
+        assertEquals(3, userSnapshot.refresh());
+        assertEquals(0, userSnapshot.refresh());
+
+        assertEquals(2, userSnapshot.size());
+        assertEquals("Ilya", userSnapshot.get(updated.getId()).get().getName());
+        assertTrue(userSnapshot.get(deleted.getId()).isEmpty());
+        assertEquals(List.of(updated.getId(), created.getId()),
+                userSnapshot.findByNamePrefix("I", 10).stream().map(User::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRefresh_appliesChangeOfTransactionThatCommittedLate() {
+        User slowUser = userDAOImpl.save(new User("Ivan", "ivan@ya.ru", 20));
+        User fastUser = userDAOImpl.save(new User("Petr", "petr@ya.ru", 21));
+        userSnapshot.load();
+
+        try (Session slow = sessionFactory.openSession()) {
+            Transaction slowTransaction = slow.beginTransaction();
+            slow.find(User.class, slowUser.getId(), LockModeType.PESSIMISTIC_WRITE).setName("Ilya");
+            slow.persist(new UserChange(slowUser.getId(), UserChange.Operation.UPDATED));
+
+            fastUser.setName("Pavel");
+            userDAOImpl.update(fastUser);
+
+            assertEquals(0, userSnapshot.refresh());
+            slowTransaction.commit();
+        }
+
+        assertEquals(2, userSnapshot.refresh());
+        assertEquals("Ilya", userSnapshot.get(slowUser.getId()).get().getName());
+        assertEquals("Pavel", userSnapshot.get(fastUser.getId()).get().getName());
+    }
+
+    @Test
+    public void testRefresh_reloadsWhenUnreadChangesWerePurged() {
+        User updated = userDAOImpl.save(new User("Ivan", "ivan@ya.ru", 20));
+        userSnapshot.load();
+
+        updated.setName("Ilya");
+        userDAOImpl.update(updated);
+        userDAOImpl.save(new User("Irina", "irina@ya.ru", 22));
+        userChangeFeed.purgeBefore(LocalDateTime.now().plusMinutes(1));
+
+        assertEquals(2, userSnapshot.refresh());
+
+        assertEquals(2, userSnapshot.size());
+        assertEquals("Ilya", userSnapshot.get(updated.getId()).get().getName());
+        assertEquals(userChangeFeed.readHead(), userSnapshot.getCursor());
+    }
+
+    @Test
+    public void testSize_whenNotLoaded() {
+        assertThrows(IllegalStateException.class, userSnapshot::size);
+    }
+}
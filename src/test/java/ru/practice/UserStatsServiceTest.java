@@ -0,0 +1,132 @@
+package ru.practice;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practice.dao.UserChangeFeed;
+import ru.practice.dao.UserChangeFeedImpl;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+import ru.practice.services.SnapshotUserStatsService;
+import ru.practice.services.UserStatsService;
+import ru.practice.services.UserStatsServiceImpl;
+import ru.practice.snapshot.UserSnapshot;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class UserStatsServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static UserDAOImpl userDAOImpl;
+    private static UserChangeFeed userChangeFeed;
+
+    @BeforeAll
+    static void initHibernate() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+
+        configuration.setProperties(new Properties() {{
+            setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+            setProperty("hibernate.connection.username", postgres.getUsername());
+            setProperty("hibernate.connection.password", postgres.getPassword());
+        }});
+
+        sessionFactory = configuration.buildSessionFactory();
+        userDAOImpl = new UserDAOImpl(sessionFactory);
+        userChangeFeed = new UserChangeFeedImpl(sessionFactory);
+    }
+
+    @BeforeEach
+    void resetDB() {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            session.createNativeQuery("truncate table users, user_changes").executeUpdate();
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static void saveUsers() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            User user = new User("user" + i, "user" + i + "@ya.ru", 15 + i);
+            user.setCreatedAt(LocalDateTime.of(2026, 10, 1 + i % 3, i % 24, 30));
+            users.add(user);
+        }
+        userDAOImpl.saveAll(users);
+    }
+
+    @Test
+    public void testAggregates() {
+        saveUsers();
+        UserStatsService stats = new UserStatsServiceImpl(sessionFactory);
+
+        assertEquals(30, stats.countUsers());
+        assertArrayEquals(new long[]{0, 5, 10, 10, 5}, stats.ageHistogram(10));
+        assertEquals(Map.of(LocalDate.of(2026, 10, 2), 10L, LocalDate.of(2026, 10, 3), 10L),
+                stats.signUpsPerDay(LocalDate.of(2026, 10, 2), LocalDate.of(2026, 10, 5)));
+    }
+
+    @Test
+    public void testResultsAreCachedForTtl() {
+        saveUsers();
+        UserStatsServiceImpl stats = new UserStatsServiceImpl(sessionFactory, Duration.ofMinutes(1));
+
+        assertEquals(30, stats.countUsers());
+        userDAOImpl.save(new User("late", "late@ya.ru", 40));
+        assertEquals(30, stats.countUsers());
+
+        stats.invalidate();
+        assertEquals(31, stats.countUsers());
+    }
+
+    @Test
+    public void testSnapshotStatsMatchQueries() {
+        saveUsers();
+        UserSnapshot snapshot = new UserSnapshot(sessionFactory, userChangeFeed);
+        snapshot.load();
+        UserStatsService fromSnapshot = new SnapshotUserStatsService(snapshot);
+        UserStatsService fromQueries = new UserStatsServiceImpl(sessionFactory);
+
+        assertEquals(fromQueries.countUsers(), fromSnapshot.countUsers());
+        assertArrayEquals(fromQueries.ageHistogram(7), fromSnapshot.ageHistogram(7));
+        assertEquals(fromQueries.signUpsPerDay(LocalDate.of(2026, 9, 30), LocalDate.of(2026, 10, 3)),
+                fromSnapshot.signUpsPerDay(LocalDate.of(2026, 9, 30), LocalDate.of(2026, 10, 3)));
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practice;
+
+import org.junit.jupiter.api.Test;
+import ru.practice.models.User;
+import ru.practice.services.UserValidator;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserValidatorTest {
+
+    private final UserValidator validator = UserValidator.standard();
+
+    @Test
+    public void testValidate_whenUserIsValid() {
+        assertEquals(0, validator.validate(new User("test", "test@ya.ru", 0)));
+        assertEquals(0, validator.validate(new User("a".repeat(256), "test@ya.ru", 120)));
+    }
+
+    @Test
+    public void testValidate_reportsEveryViolatedRule() {
+        int violations = validator.validate(new User(null, "", 121));
+
+        assertEquals(UserValidator.NAME_LENGTH | UserValidator.EMAIL_LENGTH | UserValidator.AGE_RANGE, violations);
+        assertEquals("Name length should be between 1 and 256 characters. "
+                + "Email length should be between 1 and 256 characters. "
+                + "Age should be in range of 0 and 120 years.", UserValidator.describe(violations));
+        assertEquals(UserValidator.EMAIL_LENGTH, validator.validate(new User("test", null, 30)));
+    }
+
+    @Test
+    public void testValidateAll_marksRepeatedEmails() {
+        List<User> users = List.of(
+                new User("a", "a@ya.ru", 20),
+                new User("b", "b@ya.ru", -1),
+                new User("c", "a@ya.ru", 30));
+        int[] violations = new int[users.size()];
+
+        int all = validator.validateAll(users, violations);
+
+        assertArrayEquals(new int[]{0, UserValidator.AGE_RANGE, UserValidator.EMAIL_DUPLICATE}, violations);
+        assertEquals(UserValidator.AGE_RANGE | UserValidator.EMAIL_DUPLICATE, all);
+        assertEquals(0, validator.validateAll(List.of(new User("a", "a@ya.ru", 20)), violations));
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practice.benchmarks;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import ru.practice.models.User;
+import ru.practice.models.UserChange;
+
+/**
+ * Session factories for benchmarks. By default an in-memory H2 database is used; pass
+ * {@code -Dbench.url=jdbc:postgresql://... -Dbench.username=... -Dbench.password=...} to measure a real server.
+ */
+public final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    public static SessionFactory open(String name, Class<?>... extraEntities) {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserChange.class);
+        for (Class<?> entity : extraEntities) {
+            configuration.addAnnotatedClass(entity);
+        }
+
+        String url = System.getProperty("bench.url");
+        if (url == null) {
+            configuration.setProperty("hibernate.connection.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+            configuration.setProperty("hibernate.connection.username", "sa");
+            configuration.setProperty("hibernate.connection.password", "");
+            configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        } else {
+            configuration.setProperty("hibernate.connection.url", url);
+            configuration.setProperty("hibernate.connection.username", System.getProperty("bench.username", "postgres"));
+            configuration.setProperty("hibernate.connection.password", System.getProperty("bench.password", ""));
+            configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        }
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.show_sql", "false");
+        configuration.setProperty("hibernate.connection.pool_size", "64");
+
+        return configuration.buildSessionFactory();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practice.benchmarks;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.services.Emails;
+import ru.practice.util.LogSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of a user by a mixed-case email as the table grows. {@code normalizedLookup} normalizes the argument
+ * and reads through the unique index on the stored, already normalized emails, so its time should not change
+ * with {@code users}; {@code lowerScan} is the {@code lower(email) = ?} workaround, which cannot use that index
+ * and grows with the table. Both go through the same session and query path and differ only in the predicate,
+ * and the largest table is big enough for the scan to dominate the per-query overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EmailLookupBenchmark {
+
+    private static final int BATCH = 5000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    private SessionFactory sessionFactory;
+    private UserDAOImpl userDAO;
+
+    @Setup
+    public void setUp() {
+        LogSettings.quietApplicationLoggers();
+
+        sessionFactory = BenchmarkDatabase.open("email" + users);
+        userDAO = new UserDAOImpl(sessionFactory);
+
+        for (int from = 0; from < users; from += BATCH) {
+            List<User> batch = new ArrayList<>(BATCH);
+            for (int i = from; i < Math.min(users, from + BATCH); i++) {
+                batch.add(new User("user" + i, Emails.normalize("User" + i + "@Bench.Test"), 20 + i % 60));
+            }
+            userDAO.saveAll(batch);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Optional<User> normalizedLookup() {
+        return lookup("from User u where u.email = :email", Emails.normalize(randomEmail()));
+    }
+
+    @Benchmark
+    public Optional<User> lowerScan() {
+        return lookup("from User u where lower(u.email) = lower(:email)", randomEmail());
+    }
+
+    private Optional<User> lookup(String query, String email) {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery(query, User.class)
+                    .setParameter("email", email)
+                    .uniqueResultOptional();
+        }
+    }
+
+    private String randomEmail() {
+        return "USER" + ThreadLocalRandom.current().nextInt(users) + "@bench.test";
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practice.benchmarks;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.openjdk.jmh.annotations.*;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.models.User;
+import ru.practice.util.LogSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of dirty checking and of loading {@link User} entities. Compare a normal build, where entities are
+ * enhanced with inline dirty tracking, against one built with {@code -DskipEnhance}, and run with
+ * {@code -prof gc}: {@code gc.alloc.rate.norm} of {@code readPage} divided by {@link #PAGE_SIZE} is the
+ * allocation per loaded user. Pass {@code -p enhanced=false} with the {@code -DskipEnhance} build; the setup
+ * fails when the classes on the classpath are not the ones the results would be labeled with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserEntityBenchmark {
+
+    static final int USERS = 10_000;
+    static final int PAGE_SIZE = 1000;
+
+    @Param({"true"})
+    private boolean enhanced;
+
+    private SessionFactory sessionFactory;
+    private UserDAOImpl userDAO;
+    private List<Integer> ids;
+
+    @Setup
+    public void setUp() {
+        LogSettings.quietApplicationLoggers();
+        if (SelfDirtinessTracker.class.isAssignableFrom(User.class) != enhanced) {
+            throw new IllegalStateException("User entity is " + (enhanced ? "not " : "")
+                    + "enhanced, run with -p enhanced=" + !enhanced + " or rebuild");
+        }
+
+        sessionFactory = BenchmarkDatabase.open("entity");
+        userDAO = new UserDAOImpl(sessionFactory);
+
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User("user" + i, "user" + i + "@bench.test", 20 + i % 60));
+        }
+        ids = new ArrayList<>(USERS);
+        for (User user : userDAO.saveAll(users)) {
+            ids.add(user.getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    /**
+     * The DAO's update: load, change, flush and commit in a session of its own.
+     */
+    @Benchmark
+    public User update() {
+        int index = ThreadLocalRandom.current().nextInt(USERS);
+        return userDAO.update(new User(ids.get(index), "user" + index, "user" + index + "@bench.test",
+                ThreadLocalRandom.current().nextInt(100)));
+    }
+
+    /**
+     * Bulk read of {@link #PAGE_SIZE} users.
+     */
+    @Benchmark
+    public List<User> readPage() {
+        int after = ids.get(ThreadLocalRandom.current().nextInt(USERS - PAGE_SIZE));
+        return userDAO.readPage(after, PAGE_SIZE);
+    }
+
+    /**
+     * Flush of a session holding {@link #PAGE_SIZE} loaded users of which one was changed. Without
+     * enhancement every managed user is compared with its loaded state.
+     */
+    @Benchmark
+    public void flushOneOfManyChanged(ManagedUsers managed) {
+        User user = managed.users.get(ThreadLocalRandom.current().nextInt(managed.users.size()));
+        user.setAge(user.getAge() + 1);
+        managed.session.flush();
+    }
+
+    @State(Scope.Thread)
+    public static class ManagedUsers {
+
+        private Session session;
+        private Transaction transaction;
+        private List<User> users;
+
+        @Setup(Level.Iteration)
+        public void load(UserEntityBenchmark benchmark) {
+            session = benchmark.sessionFactory.openSession();
+            transaction = session.beginTransaction();
+            users = session.createSelectionQuery("from User u order by u.id", User.class)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+        }
+
+        @TearDown(Level.Iteration)
+        public void rollback() {
+            transaction.rollback();
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practice.benchmarks;
+
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import ru.practice.dao.UserDAOImpl;
+import ru.practice.http.UserHttpServer;
+import ru.practice.models.User;
+import ru.practice.services.UserService;
+import ru.practice.services.UserServiceImpl;
+import ru.practice.util.LogSettings;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second and latency of the HTTP API over loopback. Throughput mode gives requests per second,
+ * sample mode gives the latency distribution. The client keeps connections alive between requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@Threads(8)
+public class UserHttpBenchmark {
+
+    private static final int USERS = 5_000;
+
+    private SessionFactory sessionFactory;
+    private UserHttpServer server;
+    private HttpClient client;
+    private String baseUrl;
+    private List<Integer> ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        LogSettings.quietApplicationLoggers();
+        sessionFactory = BenchmarkDatabase.open("http");
+        UserService userService = new UserServiceImpl(new UserDAOImpl(sessionFactory));
+
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User("user" + i, "user" + i + "@bench.test", 20 + i % 60));
+        }
+        ids = new ArrayList<>(USERS);
+        for (User user : userService.saveAll(users)) {
+            ids.add(user.getId());
+        }
+
+        server = new UserHttpServer(userService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getPort() + "/users";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public String getUser() throws Exception {
+        int id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return get(baseUrl + "/" + id);
+    }
+
+    @Benchmark
+    public String getPage() throws Exception {
+        int after = ids.get(ThreadLocalRandom.current().nextInt(ids.size() - 100));
+        return get(baseUrl + "?after=" + after + "&limit=100");
+    }
+
+    @Benchmark
+    public String multiGet() throws Exception {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            if (i > 0) {
+                query.append(',');
+            }
+            query.append(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+        }
+        return get(baseUrl + "?ids=" + query);
+    }
+
+    private String get(String url) throws Exception {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body();
+    }
+}
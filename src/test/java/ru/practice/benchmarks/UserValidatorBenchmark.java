@@ -0,0 +1,105 @@
+package ru.practice.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+import ru.practice.models.User;
+import ru.practice.services.UserValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field validation of a user without the email lookup. {@code builderAndException} is the former
+ * {@code UserServiceImpl.isUserValid}: a {@code StringBuilder} and warnings per call and an exception for an
+ * invalid user; {@code validator} returns a bitmask. {@code invalidPercent} sets the share of invalid users;
+ * run with {@code -prof gc} to see that the validator allocates nothing for valid users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserValidatorBenchmark {
+
+    // Warnings of the former path are discarded, so only building them is measured, not writing them
+    private static final Logger logger = NOPLogger.NOP_LOGGER;
+
+    private static final int BATCH = 1000;
+
+    @Param({"0", "10"})
+    private int invalidPercent;
+
+    private final UserValidator validator = UserValidator.standard();
+    private List<User> users;
+    private int[] violations;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        users = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            boolean invalid = i % 100 < invalidPercent;
+            users.add(new User(i + 1, "user" + i, "user" + i + "@bench.test", invalid ? 130 : 20 + i % 60));
+        }
+        violations = new int[BATCH];
+    }
+
+    @Benchmark
+    public boolean builderAndException() {
+        try {
+            return isUserValid(nextUser());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public int validator() {
+        return validator.validate(nextUser());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int validatorBatch() {
+        return validator.validateAll(users, violations);
+    }
+
+    private User nextUser() {
+        User user = users.get(next);
+        next = next + 1 == BATCH ? 0 : next + 1;
+        return user;
+    }
+
+    private static boolean isUserValid(User user) {
+        boolean isValid = true;
+        StringBuilder builder = new StringBuilder();
+
+        int nameLength = user.getName().length();
+        if (nameLength > 256 || nameLength == 0) {
+            logger.warn("Name length should be between 1 and 256 characters");
+            builder.append("Name length should be between 1 and 256 characters. ");
+            isValid = false;
+        }
+
+        int emailLength = user.getEmail().length();
+        if (emailLength > 256 || emailLength == 0) {
+            logger.warn("Email length should be between 1 and 256 characters");
+            builder.append("Email length should be between 1 and 256 characters. ");
+            isValid = false;
+        }
+
+        int userAge = user.getAge();
+        if (userAge < 0 || userAge > 120) {
+            logger.warn("Age should be in range of 0 and 120 years");
+            builder.append("Age should be in range of 0 and 120 years. ");
+            isValid = false;
+        }
+        if (!isValid) {
+            throw new IllegalArgumentException(builder.toString());
+        }
+        return true;
+    }
+}